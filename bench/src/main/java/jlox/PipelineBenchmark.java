@@ -0,0 +1,99 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each stage of the interpreter pipeline separately, over the example programs and scaled up variants of
+ * them. Every stage gets the output of the previous stages precomputed, so only the stage itself is timed.
+ * <p>
+ * Run with {@code -prof gc} to get allocation rates next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({
+            // examples/
+            "arrays", "closures", "fibonacci", "fizzbuzz", "functional_rule110", "inheritance", "linked_list",
+            "maps", "scopes",
+            // bench/programs/
+            "array_100k", "fib30", "linked_list_10k", "map_100k", "rule110_long",
+    })
+    public String program;
+
+    private final ErrorReporter reporter = new ErrorReporter(new PrintStream(OutputStream.nullOutputStream()));
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private Program compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = load(program);
+        tokens = new Lexer(source, reporter).lexTokens();
+        statements = new Parser(tokens, reporter).parse();
+        compiled = Program.compile(source, reporter);
+        if (compiled == null) {
+            throw new IllegalStateException("Benchmark program " + program + " does not compile.");
+        }
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(source, reporter).lexTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+
+    @Benchmark
+    public Resolver resolve() {
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+        return resolver;
+    }
+
+    @Benchmark
+    public int interpret() {
+        // Output is still formatted and encoded, it just isn't written anywhere.
+        OutputSink out = new BufferedSink(OutputStream.nullOutputStream(), false);
+        return new Isolate(out, new PrintStream(OutputStream.nullOutputStream())).run(compiled);
+    }
+
+    static String load(String program) {
+        String resource = "/programs/" + program + ".lox";
+        try (InputStream in = PipelineBenchmark.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No benchmark program " + resource + ".");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package jlox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the pipeline stages over generated {@link Workloads} of growing size. Comparing the time per operation
+ * between sizes shows which subsystems scale worse than linearly.
+ * <p>
+ * The deepest workloads recurse further than the default thread stack allows, so the benchmarks fork with a larger
+ * one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class ScalingBenchmark {
+    @Param({"DEEP_CLOSURES", "WIDE_CLASS", "INHERITANCE_CHAIN", "LITERAL_HEAVY", "NESTED_BLOCKS", "OBJECT_GRAPH"})
+    public Workloads workload;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private final ErrorReporter reporter = new ErrorReporter(new PrintStream(OutputStream.nullOutputStream()));
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private Program compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = workload.generate(size);
+        tokens = new Lexer(source, reporter).lexTokens();
+        statements = new Parser(tokens, reporter).parse();
+        compiled = Program.compile(source, reporter);
+        if (compiled == null) {
+            throw new IllegalStateException("Workload " + workload + " of size " + size + " does not compile.");
+        }
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(source, reporter).lexTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+
+    @Benchmark
+    public Resolver resolve() {
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+        return resolver;
+    }
+
+    @Benchmark
+    public int interpret() {
+        OutputSink out = new BufferedSink(OutputStream.nullOutputStream(), false);
+        return new Isolate(out, new PrintStream(OutputStream.nullOutputStream())).run(compiled);
+    }
+}
@@ -0,0 +1,157 @@
+package jlox;
+
+/**
+ * Generates synthetic Lox programs whose size along one dimension is given by a parameter, to see how each part of
+ * the interpreter scales with its input. Every program prints a single result, so the output stays small.
+ * <p>
+ * Usage: {@code Workloads <workload> <size>}, printing the generated program.
+ */
+public enum Workloads {
+    /**
+     * Functions nested {@code size} deep, the innermost one reading a variable from every enclosing function.
+     */
+    DEEP_CLOSURES {
+        @Override
+        String generate(int size) {
+            StringBuilder source = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                source.append("fun f").append(i).append("(a").append(i).append(") {\n");
+            }
+            source.append("var sum = 0;\n");
+            for (int i = 0; i < size; i++) {
+                source.append("sum = sum + a").append(i).append(";\n");
+            }
+            source.append("return sum;\n");
+            for (int i = size - 1; i >= 0; i--) {
+                source.append("}\n");
+                if (i > 0) {
+                    source.append("return f").append(i).append("(").append(i).append(");\n");
+                }
+            }
+            source.append("var sum = 0;\n");
+            source.append("for (var i = 0; i < 100; i = i + 1) { sum = sum + f0(0); }\n");
+            source.append("print sum;\n");
+            return source.toString();
+        }
+    },
+
+    /**
+     * A class with {@code size} fields, all of them written and read repeatedly.
+     */
+    WIDE_CLASS {
+        @Override
+        String generate(int size) {
+            StringBuilder source = new StringBuilder("class Wide {\ninit() {\n");
+            for (int i = 0; i < size; i++) {
+                source.append("this.field").append(i).append(" = ").append(i).append(";\n");
+            }
+            source.append("}\nsum() {\nvar sum = 0;\n");
+            for (int i = 0; i < size; i++) {
+                source.append("sum = sum + this.field").append(i).append(";\n");
+            }
+            source.append("return sum;\n}\n}\n");
+            source.append("var sum = 0;\n");
+            source.append("for (var i = 0; i < 100; i = i + 1) { sum = sum + Wide().sum(); }\n");
+            source.append("print sum;\n");
+            return source.toString();
+        }
+    },
+
+    /**
+     * A chain of {@code size} subclasses, where calls on the last class resolve to methods of the first one, and
+     * every initializer calls its superclass initializer.
+     */
+    INHERITANCE_CHAIN {
+        @Override
+        String generate(int size) {
+            StringBuilder source = new StringBuilder("class C0 {\ninit() { this.depth = 0; }\nbase() { return 1; }\n}\n");
+            for (int i = 1; i < size; i++) {
+                source.append("class C").append(i).append(" < C").append(i - 1).append(" {\n");
+                source.append("init() { super.init(); this.depth = this.depth + 1; }\n");
+                source.append("}\n");
+            }
+            source.append("var instance = C").append(size - 1).append("();\n");
+            source.append("var sum = 0;\n");
+            source.append("for (var i = 0; i < 100; i = i + 1) { sum = sum + instance.base(); }\n");
+            source.append("print sum + instance.depth;\n");
+            return source.toString();
+        }
+    },
+
+    /**
+     * {@code size} global variable declarations full of literals, to stress the lexer and parser.
+     */
+    LITERAL_HEAVY {
+        @Override
+        String generate(int size) {
+            StringBuilder source = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                source.append("var v").append(i).append(" = ").append(i).append(".5 * 2 + 1 - 3 / 4;\n");
+                source.append("var s").append(i).append(" = \"string ").append(i)
+                        .append("\" == \"string\" or !true and nil != false;\n");
+            }
+            source.append("print v").append(size - 1).append(";\n");
+            return source.toString();
+        }
+    },
+
+    /**
+     * Blocks nested {@code size} deep, each declaring a variable, and the innermost one reading all of them.
+     */
+    NESTED_BLOCKS {
+        @Override
+        String generate(int size) {
+            StringBuilder source = new StringBuilder("var sum = 0;\nfor (var i = 0; i < 100; i = i + 1) {\n");
+            for (int i = 0; i < size; i++) {
+                source.append("{ var b").append(i).append(" = ").append(i).append(";\n");
+            }
+            for (int i = 0; i < size; i++) {
+                source.append("sum = sum + b").append(i).append(";\n");
+            }
+            source.append("}\n".repeat(size));
+            source.append("}\nprint sum;\n");
+            return source.toString();
+        }
+    },
+
+    /**
+     * A complete binary tree of at least {@code size} instances, built and then traversed recursively.
+     */
+    OBJECT_GRAPH {
+        @Override
+        String generate(int size) {
+            int depth = 32 - Integer.numberOfLeadingZeros(size);
+            return """
+                    class Tree {
+                        init(left, right) {
+                            this.left = left;
+                            this.right = right;
+                        }
+
+                        count() {
+                            if (this.left == nil) return 1;
+                            return 1 + this.left.count() + this.right.count();
+                        }
+                    }
+
+                    fun build(depth) {
+                        if (depth == 1) return Tree(nil, nil);
+                        return Tree(build(depth - 1), build(depth - 1));
+                    }
+
+                    print build(%d).count();
+                    """.formatted(depth);
+        }
+    };
+
+    abstract String generate(int size);
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: Workloads <workload> <size>");
+            System.exit(64);
+        }
+
+        System.out.print(valueOf(args[0].toUpperCase()).generate(Integer.parseInt(args[1])));
+    }
+}
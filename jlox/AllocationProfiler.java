@@ -0,0 +1,77 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attributes the instances, closures and strings a program allocates to the source line and Lox class that
+ * allocated them, to find out what fills the heap.
+ * <p>
+ * The current line is kept up to date by wrapper statements in an {@link Instrumenter instrumented} copy of the
+ * program, and the interpreter reports allocations to the profiler it is given. Byte counts are the estimates of
+ * {@link HeapHistogram}, and only cover the allocation itself, not what it grows into later.
+ */
+class AllocationProfiler {
+    private record Site(int line, String type) {
+    }
+
+    private final Map<Site, long[]> sites = new HashMap<>();
+    private int currentLine = 0;
+
+    Program instrument(Program program) {
+        return new Instrumenter(LineMarker::new).instrument(program);
+    }
+
+    void instance(LoxClass klass) {
+        record(klass.name, HeapHistogram.INSTANCE_BYTES + HeapHistogram.sizeOf(Map.of()));
+    }
+
+    void closure(Stmt.Function function) {
+        record("<fn " + function.name.lexeme + ">", HeapHistogram.FUNCTION_BYTES);
+    }
+
+    void string(String string) {
+        record("string", HeapHistogram.sizeOf(string));
+    }
+
+    private void record(String type, long bytes) {
+        long[] stats = sites.computeIfAbsent(new Site(currentLine, type), site -> new long[2]);
+        stats[0]++;
+        stats[1] += bytes;
+    }
+
+    /**
+     * Prints the allocation sites that allocated the most bytes.
+     */
+    void report(PrintStream out, int top) {
+        out.printf("%6s  %-20s %12s %12s%n", "Line", "Type", "Allocations", "Bytes");
+        sites.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+                .limit(top)
+                .forEach(site -> out.printf("%6d  %-20s %12d %12d%n", site.getKey().line(), site.getKey().type(),
+                        site.getValue()[0], site.getValue()[1]));
+    }
+
+    /**
+     * Makes the line of the statement it wraps the current line while the statement runs.
+     */
+    private class LineMarker extends Stmt {
+        final Stmt statement;
+
+        LineMarker(Stmt statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            int previous = currentLine;
+            currentLine = line;
+            try {
+                return statement.accept(visitor);
+            } finally {
+                currentLine = previous;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output sink encoding text straight into a large byte buffer as UTF-8, and only writing to the underlying stream
+ * when the buffer fills up or is flushed. When line buffered, every line is flushed as soon as it is complete, which
+ * is what you want when a person is watching the output in a terminal.
+ * <p>
+ * Like {@link java.io.PrintStream}, write errors are not thrown. Once writing has failed, all further output is
+ * dropped.
+ */
+class BufferedSink implements OutputSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final OutputStream out;
+    private final boolean lineBuffered;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final char[] digits = new char[NumberFormatter.MAX_LENGTH];
+    private int count = 0;
+    private boolean failed = false;
+
+    BufferedSink(OutputStream out, boolean lineBuffered) {
+        this.out = out;
+        this.lineBuffered = lineBuffered;
+    }
+
+    @Override
+    public void write(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (count == buffer.length) {
+                    drain();
+                }
+                buffer[count++] = (byte) c;
+            } else {
+                if (buffer.length - count < 4) {
+                    drain();
+                }
+                if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    encode(Character.toCodePoint(c, text.charAt(++i)));
+                } else if (Character.isSurrogate(c)) {
+                    buffer[count++] = '?';
+                } else {
+                    encode(c);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(double number) {
+        int length = NumberFormatter.format(number, digits);
+        if (buffer.length - count < length) {
+            drain();
+        }
+        // Formatted numbers are plain ASCII.
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) digits[i];
+        }
+    }
+
+    @Override
+    public void newLine() {
+        if (buffer.length - count < LINE_SEPARATOR.length) {
+            drain();
+        }
+        for (byte b : LINE_SEPARATOR) {
+            buffer[count++] = b;
+        }
+
+        if (lineBuffered) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        drain();
+        if (failed) {
+            return;
+        }
+
+        try {
+            out.flush();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * Returns whether writing to the underlying stream has failed.
+     */
+    boolean failed() {
+        return failed;
+    }
+
+    private void encode(int codePoint) {
+        if (codePoint < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (codePoint >> 6));
+        } else if (codePoint < 0x10000) {
+            buffer[count++] = (byte) (0xe0 | (codePoint >> 12));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        } else {
+            buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        }
+        buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+
+    private void drain() {
+        if (count > 0 && !failed) {
+            try {
+                out.write(buffer, 0, count);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+        count = 0;
+    }
+}
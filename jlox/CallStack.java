@@ -0,0 +1,82 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Lox functions an interpreter is currently running, outermost first, along with the frame and upvalues each of
+ * them was called from, and the line each of them and the top-level code is at. It is updated on every call, so it's only a
+ * few growable arrays. Lines are only kept up to date in programs {@link Profiler#instrument instrumented} for it,
+ * otherwise they are the lines the functions are declared on.
+ * <p>
+ * Other threads, like the {@link Profiler}, may take snapshots of the stack while it is in use. They read it without
+ * any synchronization, so a snapshot is only approximately right, which is all a sampling profiler needs.
+ */
+class CallStack {
+    private Stmt.Function[] frames = new Stmt.Function[64];
+    private Object[][] callers = new Object[64][];
+    private Object[][] callerUpvalues = new Object[64][];
+    // The current line of the top-level code, then of every frame.
+    private int[] lines = new int[65];
+    private int depth = 0;
+
+    void push(Stmt.Function function, Object[] caller, Object[] upvalues) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            callers = Arrays.copyOf(callers, depth * 2);
+            callerUpvalues = Arrays.copyOf(callerUpvalues, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2 + 1);
+        }
+        frames[depth] = function;
+        callerUpvalues[depth] = upvalues;
+        callers[depth++] = caller;
+        lines[depth] = function.name.line;
+    }
+
+    void pop() {
+        callers[--depth] = null;
+        callerUpvalues[depth] = null;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    Stmt.Function[] snapshot() {
+        Stmt.Function[] frames = this.frames;
+        return Arrays.copyOf(frames, Math.min(depth, frames.length));
+    }
+
+    /**
+     * Returns the current lines of the top-level code and the active calls, like {@link #snapshot()}.
+     */
+    int[] lines() {
+        int[] lines = this.lines;
+        return Arrays.copyOf(lines, Math.min(depth + 1, lines.length));
+    }
+
+    int line() {
+        return lines[depth];
+    }
+
+    /**
+     * Sets the line the innermost active call, or the top-level code, is at.
+     */
+    void line(int line) {
+        lines[depth] = line;
+    }
+
+    /**
+     * Returns the frames the active calls were made from. Only for the interpreter's own thread.
+     */
+    List<Object[]> frames() {
+        return Arrays.asList(callers).subList(0, depth);
+    }
+
+    /**
+     * Returns the upvalues of the functions the active calls were made from. Only for the interpreter's own thread.
+     */
+    List<Object[]> upvalues() {
+        return Arrays.asList(callerUpvalues).subList(0, depth);
+    }
+}
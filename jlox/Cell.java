@@ -0,0 +1,13 @@
+package jlox;
+
+/**
+ * A boxed variable, shared by the frame that declares it and all closures capturing it. Like globals, cells may be
+ * shared by tasks: a read always sees a value some task wrote, but updates are not atomic.
+ */
+class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
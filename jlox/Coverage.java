@@ -0,0 +1,85 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Counts how often every statement of a program runs, to find its hot lines and the code that never ran.
+ * <p>
+ * The counting is done by wrapper statements, which are only put into an {@link Instrumenter instrumented} copy of
+ * the program, so programs that are not instrumented run exactly as fast as before.
+ */
+class Coverage {
+    private final List<Counter> counters = new ArrayList<>();
+
+    /**
+     * Returns a copy of the program in which every statement is counted by this coverage.
+     */
+    Program instrument(Program program) {
+        return new Instrumenter(statement -> {
+            Counter counter = new Counter(statement);
+            counters.add(counter);
+            return counter;
+        }).instrument(program);
+    }
+
+    /**
+     * Prints the most executed lines, followed by the lines with statements that never ran. A line counts as often
+     * as the most executed statement starting on it.
+     */
+    void report(PrintStream out, String source, int top) {
+        String[] lines = source.split("\r?\n", -1);
+        Map<Integer, Long> counts = new TreeMap<>();
+        int covered = 0;
+        for (Counter counter : counters) {
+            counts.merge(counter.line, counter.count, Math::max);
+            if (counter.count > 0) {
+                covered++;
+            }
+        }
+
+        out.printf("%d of %d statements covered (%.1f%%)%n", covered, counters.size(),
+                counters.isEmpty() ? 100.0 : 100.0 * covered / counters.size());
+
+        out.println("Hot lines:");
+        counts.entrySet().stream()
+                .filter(line -> line.getValue() > 0)
+                .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                .limit(top)
+                .forEach(line -> out.printf("%12d  %4d | %s%n", line.getValue(), line.getKey(),
+                        line.getKey() <= lines.length ? lines[line.getKey() - 1].strip() : ""));
+
+        Set<Integer> uncovered = new TreeSet<>();
+        for (Counter counter : counters) {
+            if (counter.count == 0) {
+                uncovered.add(counter.line);
+            }
+        }
+        out.printf("Uncovered lines: %s%n", uncovered.isEmpty() ? "none"
+                : uncovered.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Counts the executions of the statement it wraps. Visitors never see the counter itself, only the statement.
+     */
+    private static class Counter extends Stmt {
+        final Stmt statement;
+        long count = 0;
+
+        Counter(Stmt statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            count++;
+            return statement.accept(visitor);
+        }
+    }
+}
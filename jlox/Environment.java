@@ -1,23 +1,61 @@
 package jlox;
 
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The global variables of a program or module, or the natives behind them. Local variables live in frames instead,
+ * see {@link Resolver}. Globals can be shared by tasks running on different threads, so they are stored in a
+ * concurrent map: every read sees a value that was written to the variable, never a corrupted one,
+ * but updates like {@code count = count + 1} are not atomic and can be lost. Use channels to hand values between
+ * tasks.
+ * <p>
+ * Concurrent maps can't hold null, so nil is stored as a sentinel.
+ */
 class Environment {
+    private static final Object NIL = new Object();
+
     final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    final Map<String, Object> values;
+    // What nil is stored as in the map.
+    private final Object nil;
+    // The file of the module these are the globals of, null for the main program.
+    Path module;
 
     Environment() {
-        this.enclosing = null;
+        this(null);
     }
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.values = new ConcurrentHashMap<>();
+        this.nil = NIL;
+    }
+
+    /**
+     * Creates an environment that stores its variables directly in the given map, e.g. the bindings of a script
+     * engine. Nil is stored in the map as null, numbers other than doubles are read as doubles, and the map is only as
+     * thread-safe as it is itself.
+     */
+    Environment(Environment enclosing, Map<String, Object> values) {
+        this.enclosing = enclosing;
+        this.values = values;
+        this.nil = null;
     }
 
     Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+        Object value = values.get(name.lexeme);
+        // Only maps that store nil as null need a second look.
+        if (value != null || (nil == null && values.containsKey(name.lexeme))) {
+            if (value == NIL) {
+                return null;
+            }
+            // Script engine bindings may hold any kind of Java number, but Lox only knows doubles.
+            if (nil == null && value instanceof Number number && !(value instanceof Double)) {
+                return number.doubleValue();
+            }
+            return value;
         }
 
         if (enclosing != null) {
@@ -29,7 +67,7 @@ class Environment {
 
     void assign(Token name, Object value) {
         if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+            values.put(name.lexeme, value == null ? nil : value);
             return;
         }
 
@@ -41,24 +79,14 @@ class Environment {
         throw new RuntimeError(name, String.format("Undefined variable: '%s'.", name.lexeme));
     }
 
-    void define(String name, Object value) {
-        values.put(name, value);
-    }
-
-    Environment ancestor(int distance) {
-        Environment environment = this;
-        for (int i = 0; i < distance; i++) {
-            assert environment != null;
-            environment = environment.enclosing;
-        }
-        return environment;
-    }
-
-    Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    /**
+     * Returns whether the variable is defined in this environment itself, ignoring enclosing ones.
+     */
+    boolean defines(String name) {
+        return values.containsKey(name);
     }
 
-    void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    void define(String name, Object value) {
+        values.put(name, value == null ? nil : value);
     }
 }
@@ -0,0 +1,53 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Collects the compile and runtime errors of one isolate and reports them to its error stream.
+ */
+class ErrorReporter {
+    private final PrintStream err;
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+
+    ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    /**
+     * Reports the compile errors of an imported module, which were collected separately.
+     */
+    void moduleErrors(Path module, String errors) {
+        err.printf("In module '%s':%n%s%n", module, errors);
+        hadError = true;
+    }
+
+    void runtimeError(RuntimeError error) {
+        if (error.module == null) {
+            err.printf("%s\n[line %d]\n", error.getMessage(), error.token.line);
+        } else {
+            err.printf("%s\n[line %d in %s]\n", error.getMessage(), error.token.line, error.module);
+        }
+        hadRuntimeError = true;
+    }
+
+    private void report(int line, String location, String message) {
+        err.printf(
+                "[line %d] Error%s: %s%n", line, location, message
+        );
+        hadError = true;
+    }
+}
@@ -9,6 +9,7 @@ abstract class Expr {
         R visitAssignExpr(Assign expr);
         R visitBinaryExpr(Binary expr);
         R visitCallExpr(Call expr);
+        R visitFoldedExpr(Folded expr);
         R visitGetExpr(Get expr);
         R visitGroupingExpr(Grouping expr);
         R visitLiteralExpr(Literal expr);
@@ -33,6 +34,8 @@ abstract class Expr {
 
         final Token name;
         final Expr value;
+        // Set by the resolver, null for globals.
+        Reference reference;
     }
 
     static class Binary extends Expr {
@@ -69,6 +72,28 @@ abstract class Expr {
         final List<Expr> arguments;
     }
 
+    /**
+     * A call of a pure native with constant arguments, which the parser already made. Its value is only used if the
+     * callee still is that native when the call runs, since scripts may define variables of the same name. Otherwise
+     * the call runs as usual.
+     */
+    static class Folded extends Expr {
+        Folded(Call call, Object callee, Object value) {
+            this.call = call;
+            this.callee = callee;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitFoldedExpr(this);
+        }
+
+        final Call call;
+        final Object callee;
+        final Object value;
+    }
+
     static class Get extends Expr {
         Get(Expr object, Token name) {
             this.object = object;
@@ -156,6 +181,9 @@ abstract class Expr {
 
         final Token keyword;
         final Token method;
+        // Set by the resolver: where the superclass and the instance are found.
+        Reference reference;
+        Reference receiver;
     }
 
     static class This extends Expr {
@@ -169,6 +197,8 @@ abstract class Expr {
         }
 
         final Token keyword;
+        // Set by the resolver.
+        Reference reference;
     }
 
     static class Unary extends Expr {
@@ -197,5 +227,7 @@ abstract class Expr {
         }
 
         final Token name;
+        // Set by the resolver, null for globals.
+        Reference reference;
     }
 }
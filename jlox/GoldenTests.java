@@ -0,0 +1,182 @@
+package jlox;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs every example program in one JVM, in parallel, and compares its output with the expected output in the
+ * similarly named {@code .txt} file. The wall time of every program is recorded, and compared against a stored
+ * baseline to catch performance regressions.
+ * <p>
+ * Every program is run a number of times, and its fastest run counts, to keep JIT warm-up and noise from other
+ * programs running at the same time out of the timings.
+ * <p>
+ * Usage: {@code GoldenTests [--runs <n>] [--threshold <percent>] [--baseline <file>] [--update]}
+ */
+class GoldenTests {
+    private static final Path EXAMPLES = Paths.get("examples");
+    // Differences below this are noise, however large they are relative to the baseline.
+    private static final double NOISE_MILLIS = 2.0;
+
+    private record Result(String program, boolean passed, String failure, double millis) {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int runs = 10;
+        double threshold = 25.0;
+        Path baselineFile = EXAMPLES.resolve("timings.baseline");
+        boolean update = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                case "--baseline" -> baselineFile = Paths.get(args[++i]);
+                case "--update" -> update = true;
+                default -> {
+                    System.err.println("Usage: GoldenTests [--runs <n>] [--threshold <percent>] "
+                            + "[--baseline <file>] [--update]");
+                    System.exit(64);
+                }
+            }
+        }
+
+        List<Path> programs;
+        try (Stream<Path> files = Files.list(EXAMPLES)) {
+            programs = files.filter(path -> path.toString().endsWith(".lox")).sorted().toList();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Path program : programs) {
+            int times = runs;
+            futures.add(workers.submit(() -> test(program, times)));
+        }
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Future<Result> future : futures) {
+            Result result = future.get();
+            results.put(result.program(), result);
+        }
+        workers.shutdown();
+
+        Properties baseline = new Properties();
+        if (Files.exists(baselineFile)) {
+            try (BufferedReader in = Files.newBufferedReader(baselineFile)) {
+                baseline.load(in);
+            }
+        }
+
+        boolean failed = false;
+        for (Result result : results.values()) {
+            String status = "[SUCCESS]";
+            String comparison = "";
+
+            String previous = baseline.getProperty(result.program());
+            if (previous != null) {
+                double before = Double.parseDouble(previous);
+                double change = (result.millis() - before) / before * 100.0;
+                comparison = String.format(" (baseline %.1f ms, %+.0f%%)", before, change);
+                if (change > threshold && result.millis() - before > NOISE_MILLIS) {
+                    status = "[SLOWER] ";
+                    failed = true;
+                }
+            }
+
+            if (!result.passed()) {
+                status = "[FAIL]   ";
+                failed = true;
+            }
+
+            System.out.printf("%s %-20s %8.1f ms%s%n", status, result.program(), result.millis(), comparison);
+            if (!result.passed()) {
+                System.out.printf("          %s%n", result.failure());
+            }
+        }
+
+        if (update) {
+            Properties timings = new Properties();
+            for (Result result : results.values()) {
+                timings.setProperty(result.program(), String.format("%.3f", result.millis()));
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(baselineFile)) {
+                timings.store(out, "Fastest wall time in milliseconds of each example program");
+            }
+            System.out.printf("Baseline written to %s%n", baselineFile);
+        }
+
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static Result test(Path path, int runs) {
+        String name = path.getFileName().toString().replaceFirst("\\.lox$", "");
+        String source = read(path);
+        String expected = read(path.resolveSibling(name + ".txt"));
+
+        String output = null;
+        double fastest = Double.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            int status;
+            try (Isolate isolate = new Isolate(new BufferedSink(bytes, false), new PrintStream(errors))) {
+                long start = System.nanoTime();
+                status = isolate.run(source, path);
+                fastest = Math.min(fastest, (System.nanoTime() - start) / 1e6);
+            }
+
+            if (status != Isolate.EXIT_OK) {
+                return new Result(name, false, "Exited with " + status + ": " + errors.toString().trim(), fastest);
+            }
+            output = bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        String failure = compare(expected, output);
+        return new Result(name, failure == null, failure, fastest);
+    }
+
+    /**
+     * Compares outputs the way the shell would, ignoring trailing newlines. Returns a description of the first
+     * difference, or null if there is none.
+     */
+    private static String compare(String expected, String actual) {
+        String[] expectedLines = expected.replaceFirst("\n+$", "").split("\n", -1);
+        String[] actualLines = actual.replaceFirst("\n+$", "").split("\n", -1);
+
+        for (int i = 0; i < Math.max(expectedLines.length, actualLines.length); i++) {
+            String want = i < expectedLines.length ? expectedLines[i] : "<end of output>";
+            String got = i < actualLines.length ? actualLines[i] : "<end of output>";
+            if (!want.equals(got)) {
+                return String.format("Line %d: expected '%s', got '%s'", i + 1, want, got);
+            }
+        }
+        return null;
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), Charset.defaultCharset());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package jlox;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Histogram of the live Lox instances of an interpreter by class, with the approximate number of bytes each class
+ * retains. Instances are found by walking everything reachable from the globals and the frames of all active calls,
+ * including the cells and upvalues of closures. Values only held by expressions still being evaluated are missed.
+ * <p>
+ * Sizes assume a 64-bit JVM with compressed references. An instance retains itself, its field map, and the numbers
+ * and strings in its fields, but not the other instances it refers to.
+ */
+class HeapHistogram {
+    static final long INSTANCE_BYTES = 24;
+    static final long FUNCTION_BYTES = 32;
+    private static final long MAP_BYTES = 48;
+    private static final long MAP_ENTRY_BYTES = 32;
+    private static final long DOUBLE_BYTES = 16;
+    private static final long STRING_BYTES = 40;
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Object> pending = new ArrayDeque<>();
+    // Instance count and retained bytes by class name.
+    private final Map<String, long[]> classes = new TreeMap<>();
+
+    static String of(Interpreter interpreter) {
+        HeapHistogram histogram = new HeapHistogram();
+        histogram.visit(interpreter.globals);
+        histogram.visit(interpreter.frame());
+        histogram.visit(interpreter.upvalues);
+        for (Object[] frame : interpreter.callStack.frames()) {
+            histogram.visit(frame);
+        }
+        for (Object[] upvalues : interpreter.callStack.upvalues()) {
+            histogram.visit(upvalues);
+        }
+        histogram.walk();
+        return histogram.toString();
+    }
+
+    static long sizeOf(String string) {
+        return STRING_BYTES + string.length();
+    }
+
+    static long sizeOf(Map<String, Object> map) {
+        if (map.isEmpty()) {
+            return MAP_BYTES;
+        }
+        int capacity = Math.max(16, Integer.highestOneBit((int) (map.size() / 0.75f)) << 1);
+        return MAP_BYTES + 16 + 4L * capacity + MAP_ENTRY_BYTES * map.size();
+    }
+
+    private void visit(Object object) {
+        if (object != null && visited.add(object)) {
+            pending.push(object);
+        }
+    }
+
+    private void walk() {
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            if (object instanceof Environment environment) {
+                environment.values.values().forEach(this::visit);
+                visit(environment.enclosing);
+            } else if (object instanceof LoxModule module) {
+                visit(module.exports());
+            } else if (object instanceof LoxInstance instance) {
+                long bytes = INSTANCE_BYTES + sizeOf(instance.fields);
+                for (Object value : instance.fields.values()) {
+                    if (value instanceof Double) {
+                        bytes += DOUBLE_BYTES;
+                    } else if (value instanceof String string) {
+                        bytes += sizeOf(string);
+                    } else {
+                        visit(value);
+                    }
+                }
+                long[] stats = classes.computeIfAbsent(instance.klass.name, name -> new long[2]);
+                stats[0]++;
+                stats[1] += bytes;
+                visit(instance.klass);
+            } else if (object instanceof LoxFunction function) {
+                for (Object upvalue : function.upvalues) {
+                    visit(upvalue);
+                }
+                visit(function.receiver);
+            } else if (object instanceof Object[] frame) {
+                for (Object value : frame) {
+                    visit(value);
+                }
+            } else if (object instanceof Cell cell) {
+                visit(cell.value);
+            } else if (object instanceof LoxArray array) {
+                for (Object element : array.toArray()) {
+                    visit(element);
+                }
+            } else if (object instanceof LoxMap map) {
+                visit(map.keys());
+                visit(map.values());
+            } else if (object instanceof LoxClass klass) {
+                klass.methods.values().forEach(this::visit);
+                visit(klass.superclass);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%-20s %10s %12s", "Class", "Instances", "Bytes"));
+        for (Map.Entry<String, long[]> entry : classes.entrySet()) {
+            builder.append(String.format("%n%-20s %10d %12d", entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1]));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Makes instrumented copies of programs, in which every statement is wrapped by a statement of the caller's choice.
+ * Wrappers are usually a {@link Stmt} subclass that overrides {@code accept} to do its work around the wrapped
+ * statement, so visitors never see them.
+ * <p>
+ * Instrumentation never touches the original program, and the interpreter knows nothing about it, so programs that
+ * are not instrumented pay nothing for it.
+ */
+class Instrumenter {
+    private final UnaryOperator<Stmt> wrapper;
+
+    Instrumenter(UnaryOperator<Stmt> wrapper) {
+        this.wrapper = wrapper;
+    }
+
+    Program instrument(Program program) {
+        return program.withStatements(instrument(program.statements));
+    }
+
+    private List<Stmt> instrument(List<Stmt> statements) {
+        List<Stmt> instrumented = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            instrumented.add(instrument(statement));
+        }
+        return instrumented;
+    }
+
+    private Stmt instrument(Stmt statement) {
+        if (statement == null) {
+            return null;
+        }
+
+        Stmt wrapped = wrapper.apply(statement.accept(copier));
+        wrapped.line = statement.line;
+        return wrapped;
+    }
+
+    private Stmt.Function instrument(Stmt.Function function) {
+        Stmt.Function copy = new Stmt.Function(function.name, function.params, instrument(function.body));
+        copy.line = function.line;
+        copy.local = function.local;
+        copy.parameters = function.parameters;
+        copy.captures = function.captures;
+        copy.frameSize = function.frameSize;
+        return copy;
+    }
+
+    /**
+     * Copies a statement, with all statements nested in it instrumented.
+     */
+    private final Stmt.Visitor<Stmt> copier = new Stmt.Visitor<>() {
+        @Override
+        public Stmt visitBlockStmt(Stmt.Block stmt) {
+            return at(stmt, new Stmt.Block(instrument(stmt.statements)));
+        }
+
+        @Override
+        public Stmt visitClassStmt(Stmt.Class stmt) {
+            List<Stmt.Function> methods = new ArrayList<>();
+            for (Stmt.Function method : stmt.methods) {
+                methods.add(instrument(method));
+            }
+            Stmt.Class copy = new Stmt.Class(stmt.name, stmt.superclass, methods);
+            copy.local = stmt.local;
+            copy.superLocal = stmt.superLocal;
+            return at(stmt, copy);
+        }
+
+        @Override
+        public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitForStmt(Stmt.For stmt) {
+            Stmt.For copy = new Stmt.For(instrument(stmt.initializer), stmt.condition, stmt.increment,
+                    instrument(stmt.body));
+            copy.counter = stmt.counter;
+            copy.step = stmt.step;
+            copy.counterRead = stmt.counterRead;
+            return at(stmt, copy);
+        }
+
+        @Override
+        public Stmt visitFunctionStmt(Stmt.Function stmt) {
+            return instrument(stmt);
+        }
+
+        @Override
+        public Stmt visitIfStmt(Stmt.If stmt) {
+            return at(stmt, new Stmt.If(stmt.condition, instrument(stmt.thenBranch), instrument(stmt.elseBranch)));
+        }
+
+        @Override
+        public Stmt visitImportStmt(Stmt.Import stmt) {
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitPrintStmt(Stmt.Print stmt) {
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitReturnStmt(Stmt.Return stmt) {
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitVarStmt(Stmt.Var stmt) {
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitWhileStmt(Stmt.While stmt) {
+            return at(stmt, new Stmt.While(stmt.condition, instrument(stmt.body)));
+        }
+
+        private Stmt at(Stmt original, Stmt copy) {
+            copy.line = original.line;
+            return copy;
+        }
+    };
+}
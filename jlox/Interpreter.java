@@ -1,33 +1,116 @@
 package jlox;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tree-walking interpreter. An interpreter runs on a single thread, but can be {@link #fork() forked} to run Lox
+ * functions on other threads. Forks share the globals, output and error reporting of their parent.
+ * <p>
+ * Imported modules run in the same interpreter, in globals of their own. Functions remember the globals they were
+ * defined in, and switch to them while they run.
+ */
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+    static final Object[] NO_VALUES = new Object[0];
+
+    // The globals of the program or module whose code is running.
+    Environment globals;
+    private final Environment natives;
+    // Modules by path, so every module is loaded once no matter how often it's imported.
+    private final Map<Path, LoxModule> modules;
+    final CallStack callStack = new CallStack();
+    // Null unless metrics are enabled.
+    final InterpreterMetrics metrics;
+    // Null unless allocations are being profiled.
+    AllocationProfiler allocations;
+    // The frame and upvalues of the running function.
+    private Object[] frame = NO_VALUES;
+    Object[] upvalues = NO_VALUES;
+    private final OutputSink out;
+    private final ErrorReporter reporter;
+    private final char[] digits = new char[NumberFormatter.MAX_LENGTH];
+
+    Interpreter(OutputSink out, ErrorReporter reporter) {
+        this(out, reporter, List.of());
+    }
+
+    /**
+     * Creates an interpreter whose global variables live in the given maps. Lookups go through the maps in order,
+     * and new globals are defined in the first one. Native functions sit behind all of them. Without any maps, the
+     * globals get an environment of their own.
+     */
+    Interpreter(OutputSink out, ErrorReporter reporter, List<Map<String, Object>> globalScopes) {
+        this.out = out;
+        this.reporter = reporter;
+        this.metrics = InterpreterMetrics.create();
+        this.modules = new ConcurrentHashMap<>();
+
+        Environment natives = new Environment();
+        natives.define("clock", new NativeFunction(0,
+                (interpreter, arguments) -> interpreter.box((double) System.currentTimeMillis() / 1000.0)));
+        natives.define("heapStats", new NativeFunction(0,
+                (interpreter, arguments) -> HeapHistogram.of(interpreter)));
+        Tasks.define(natives);
+        LoxArray.define(natives);
+        LoxMap.define(natives);
+        LoxBuffer.define(natives);
+        LoxFiles.define(natives);
+        NativeModules.define(natives);
+        Parallel.define(natives);
+
+        this.natives = natives;
+
+        Environment globals = globalScopes.isEmpty() ? new Environment(natives) : natives;
+        for (int i = globalScopes.size() - 1; i >= 0; i--) {
+            globals = new Environment(globals, globalScopes.get(i));
+        }
+        this.globals = globals;
+    }
 
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    private Interpreter(Interpreter parent) {
+        this.out = parent.out;
+        this.reporter = parent.reporter;
+        this.metrics = parent.metrics;
+        this.modules = parent.modules;
+        this.natives = parent.natives;
+        this.globals = parent.globals;
+    }
 
-    Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
+    /**
+     * Returns an interpreter for running functions of this one on another thread. The fork has its own call stack,
+     * and leaves reporting runtime errors to whoever waits for it. Allocations of forks are not profiled.
+     */
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) System.currentTimeMillis() / 1000.0;
-            }
+    void interpret(Program program) {
+        frame = new Object[program.frameSize];
+        interpret(program.statements);
+    }
 
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
+    /**
+     * Runs a module's program in new globals, which are returned. Runtime errors are left to the caller.
+     */
+    Environment runModule(Program program, Path path) {
+        Environment module = new Environment(natives);
+        module.module = path;
+
+        Environment previous = globals;
+        globals = module;
+        try {
+            execute(program.statements, new Object[program.frameSize]);
+        } catch (RuntimeError error) {
+            error.locate(path);
+            throw error;
+        } finally {
+            globals = previous;
+        }
+        return module;
     }
 
     void interpret(List<Stmt> statements) {
@@ -36,7 +119,18 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            Jlox.runtimeError(error);
+            // Keep whatever the program printed before the error in front of the error message.
+            out.flush();
+            reporter.runtimeError(error);
+
+            if (LoxEvents.recording) {
+                LoxRuntimeErrorEvent event = new LoxRuntimeErrorEvent();
+                if (event.shouldCommit()) {
+                    event.message = error.getMessage();
+                    event.line = error.token.line;
+                    event.commit();
+                }
+            }
         }
     }
 
@@ -45,39 +139,76 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return "nil";
         }
 
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
+        if (object instanceof Double number) {
+            return new String(digits, 0, NumberFormatter.format(number, digits));
         }
 
         return object.toString();
     }
 
+    private String allocated(String string) {
+        if (allocations != null) {
+            allocations.string(string);
+        }
+        return string;
+    }
+
+    /**
+     * Concatenates the string forms of both operands, formatting numbers straight into the result.
+     */
+    private String concatenate(Object left, Object right) {
+        StringBuilder builder = new StringBuilder(2 * NumberFormatter.MAX_LENGTH);
+        append(builder, left);
+        append(builder, right);
+        return builder.toString();
+    }
+
+    private void append(StringBuilder builder, Object object) {
+        if (object instanceof Double number) {
+            builder.append(digits, 0, NumberFormatter.format(number, digits));
+        } else {
+            builder.append(stringify(object));
+        }
+    }
+
+    Object[] frame() {
+        return frame;
+    }
+
     private Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
     private void execute(Stmt stmt) {
+        if (metrics != null) {
+            metrics.statements.increment();
+        }
         stmt.accept(this);
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    /**
+     * Boxes the result of an arithmetic operation, counting it if metrics are enabled.
+     */
+    Double box(double value) {
+        if (metrics != null) {
+            metrics.boxedDoubles.increment();
+        }
+        return value;
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
-        Environment previous = this.environment;
+    /**
+     * Runs the statements in a frame of their own.
+     */
+    void execute(List<Stmt> statements, Object[] frame) {
+        Object[] previous = this.frame;
         try {
-            this.environment = environment;
+            this.frame = frame;
 
             for (Stmt statement : statements) {
                 execute(statement);
             }
         } finally {
-            this.environment = previous;
+            this.frame = previous;
         }
     }
 
@@ -115,7 +246,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return switch (expr.operator.type) {
             case MINUS -> {
                 checkNumberOperand(expr.operator, right);
-                yield -(double) right;
+                yield box(-(double) right);
             }
             case BANG -> !isTruthy(right);
             default -> null;
@@ -124,16 +255,50 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
+        return lookUpVariable(expr.name, expr.reference);
     }
 
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
+    private Object lookUpVariable(Token name, Reference reference) {
+        if (reference == null) {
             return globals.get(name);
         }
+
+        Object value = raw(reference);
+        return reference.local.boxed ? ((Cell) value).value : value;
+    }
+
+    /**
+     * Returns what's stored for a local variable, which is a {@link Cell} if the variable is boxed.
+     */
+    private Object raw(Reference reference) {
+        if (reference.upvalue >= 0) {
+            return upvalues[reference.upvalue];
+        }
+        return frame[reference.local.slot];
+    }
+
+    private void define(Local local, Token name, Object value) {
+        if (local == null) {
+            globals.define(name.lexeme, value);
+        } else {
+            frame[local.slot] = local.boxed ? new Cell(value) : value;
+        }
+    }
+
+    /**
+     * Returns the values of the upvalues of a function being created here.
+     */
+    private Object[] capture(Stmt.Function function) {
+        Reference[] captures = function.captures;
+        if (captures.length == 0) {
+            return NO_VALUES;
+        }
+
+        Object[] values = new Object[captures.length];
+        for (int i = 0; i < captures.length; i++) {
+            values[i] = raw(captures[i]);
+        }
+        return values;
     }
 
     @Override
@@ -144,25 +309,25 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return switch (expr.operator.type) {
             case MINUS -> {
                 checkNumberOperands(expr.operator, left, right);
-                yield (double) left - (double) right;
+                yield box((double) left - (double) right);
             }
             case SLASH -> {
                 checkNumberOperands(expr.operator, left, right);
-                yield (double) left / (double) right;
+                yield box((double) left / (double) right);
             }
             case STAR -> {
                 checkNumberOperands(expr.operator, left, right);
-                yield (double) left * (double) right;
+                yield box((double) left * (double) right);
             }
             case PLUS -> {
                 if (left instanceof Double && right instanceof Double) {
-                    yield (double) left + (double) right;
+                    yield box((double) left + (double) right);
                 }
                 if (left instanceof String && right instanceof String) {
-                    yield (String) left + (String) right;
+                    yield allocated((String) left + (String) right);
                 }
                 if (left instanceof String || right instanceof String) {
-                    yield stringify(left) + stringify(right);
+                    yield allocated(concatenate(left, right));
                 }
                 throw new RuntimeError(expr.operator, "Operands must be of same type (or a string).");
             }
@@ -190,7 +355,19 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        Object callee;
+        if (expr.callee instanceof Expr.Get get) {
+            Object object = evaluate(get.object);
+            if (object instanceof NativeObject target) {
+                return callNativeMethod(target, get.name, expr);
+            }
+            callee = property(object, get.name);
+        } else {
+            callee = evaluate(expr.callee);
+            if (callee instanceof NativeFunction function && function.direct != null) {
+                return callDirectNative(function, expr);
+            }
+        }
 
         List<Object> arguments = new ArrayList<>();
         for (Expr argument : expr.arguments) {
@@ -206,17 +383,108 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     function.arity(), arguments.size()));
         }
 
-        return function.call(this, arguments);
+        if (metrics != null) {
+            metrics.calls.increment();
+        }
+        try {
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            if (error.token == null) {
+                throw new RuntimeError(expr.paren, error.getMessage());
+            }
+            throw error;
+        }
+    }
+
+    @Override
+    public Object visitFoldedExpr(Expr.Folded expr) {
+        if (evaluate(expr.call.callee) == expr.callee) {
+            return expr.value;
+        }
+        return evaluate(expr.call);
+    }
+
+    /**
+     * Runs a call of a native that takes its arguments directly, without collecting them in a list.
+     */
+    private Object callDirectNative(NativeFunction function, Expr.Call expr) {
+        List<Expr> arguments = expr.arguments;
+        Object first = arguments.size() > 0 ? evaluate(arguments.get(0)) : null;
+        Object second = arguments.size() > 1 ? evaluate(arguments.get(1)) : null;
+        Object third = arguments.size() > 2 ? evaluate(arguments.get(2)) : null;
+        if (arguments.size() != function.arity()) {
+            for (int i = 3; i < arguments.size(); i++) {
+                evaluate(arguments.get(i));
+            }
+            throw new RuntimeError(expr.paren, String.format("Expected %d arguments, but got %d.",
+                    function.arity(), arguments.size()));
+        }
+
+        if (metrics != null) {
+            metrics.calls.increment();
+        }
+        try {
+            return function.direct.call(this, first, second, third);
+        } catch (RuntimeError error) {
+            if (error.token == null) {
+                throw new RuntimeError(expr.paren, error.getMessage());
+            }
+            throw error;
+        }
+    }
+
+    /**
+     * Runs a method call on a native object directly, without binding the method or collecting the arguments in a
+     * list.
+     */
+    private Object callNativeMethod(NativeObject object, Token name, Expr.Call expr) {
+        List<Expr> arguments = expr.arguments;
+        int arity = object.arity(name.lexeme);
+        if (arity < 0) {
+            throw new RuntimeError(name, String.format("Undefined property '%s'.", name.lexeme));
+        }
+
+        Object first = arguments.size() > 0 ? evaluate(arguments.get(0)) : null;
+        Object second = arguments.size() > 1 ? evaluate(arguments.get(1)) : null;
+        Object third = arguments.size() > 2 ? evaluate(arguments.get(2)) : null;
+        if (arguments.size() != arity) {
+            for (int i = 3; i < arguments.size(); i++) {
+                evaluate(arguments.get(i));
+            }
+            throw new RuntimeError(expr.paren, String.format("Expected %d arguments, but got %d.",
+                    arity, arguments.size()));
+        }
+
+        if (metrics != null) {
+            metrics.calls.increment();
+        }
+        try {
+            return object.invoke(name.lexeme, first, second, third);
+        } catch (RuntimeError error) {
+            if (error.token == null) {
+                throw new RuntimeError(expr.paren, error.getMessage());
+            }
+            throw error;
+        }
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
-        Object object = evaluate(expr.object);
+        return property(evaluate(expr.object), expr.name);
+    }
+
+    private Object property(Object object, Token name) {
         if (object instanceof LoxInstance instance) {
-            return instance.get(expr.name);
+            return instance.get(name);
+        }
+        if (object instanceof NativeObject target) {
+            return target.method(name);
+        }
+        if (object instanceof LoxModule module) {
+            return module.get(this, name);
         }
 
-        throw new RuntimeError(expr.name, "Only instances have properties.");
+        throw new RuntimeError(name, "Only instances have properties.");
     }
 
     @Override
@@ -234,10 +502,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
-        LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
-        // This superclass' 'this' will be offset by one distnace from us.
-        LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
+        LoxClass superclass = (LoxClass) lookUpVariable(expr.keyword, expr.reference);
+        LoxInstance object = (LoxInstance) lookUpVariable(expr.keyword, expr.receiver);
 
         LoxFunction method = superclass.findMethod(expr.method.lexeme);
         if (method == null) {
@@ -248,12 +514,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        return lookUpVariable(expr.keyword, expr.reference);
     }
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
+        // Variables declared in the block have slots in the current frame.
+        for (Stmt statement : stmt.statements) {
+            execute(statement);
+        }
         return null;
     }
 
@@ -267,26 +536,31 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
 
-        environment.define(stmt.name.lexeme, null);
+        define(stmt.local, stmt.name, null);
 
         if (stmt.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            frame[stmt.superLocal.slot] = superclass;
         }
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
+            if (allocations != null) {
+                allocations.closure(method);
+            }
+            LoxFunction function = new LoxFunction(method, capture(method), globals,
+                    method.name.lexeme.equals("init"), metrics);
             methods.put(method.name.lexeme, function);
         }
 
         LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass) superclass, methods);
 
-        if (superclass != null) {
-            environment = environment.enclosing;
+        if (stmt.local == null) {
+            globals.assign(stmt.name, klass);
+        } else if (stmt.local.boxed) {
+            ((Cell) frame[stmt.local.slot]).value = klass;
+        } else {
+            frame[stmt.local.slot] = klass;
         }
-
-        environment.assign(stmt.name, klass);
         return null;
     }
 
@@ -296,10 +570,73 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) {
+            execute(stmt.initializer);
+        }
+        if (stmt.counter != null && frame[stmt.counter.slot] instanceof Double start) {
+            count(stmt, start);
+            return null;
+        }
+
+        while (stmt.condition == null || isTruthy(evaluate(stmt.condition))) {
+            execute(stmt.body);
+            if (stmt.increment != null) {
+                evaluate(stmt.increment);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a counted loop, as found by the resolver. The counter is kept in a primitive double instead of its slot,
+     * and is only boxed and stored for bodies that read it.
+     */
+    private void count(Stmt.For stmt, double counter) {
+        Expr.Binary condition = (Expr.Binary) stmt.condition;
+        int slot = stmt.counter.slot;
+        for (;; counter += stmt.step) {
+            if (!(evaluate(condition.right) instanceof Double limit)) {
+                throw new RuntimeError(condition.operator, "Operands must be numbers.");
+            }
+            boolean more = switch (condition.operator.type) {
+                case LESS -> counter < limit;
+                case LESS_EQUAL -> counter <= limit;
+                case GREATER -> counter > limit;
+                default -> counter >= limit;
+            };
+            if (!more) {
+                return;
+            }
+
+            if (stmt.counterRead) {
+                frame[slot] = box(counter);
+            }
+            execute(stmt.body);
+        }
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
+        if (allocations != null) {
+            allocations.closure(stmt);
+        }
+        if (stmt.local != null && stmt.local.boxed) {
+            // The function may capture itself, so its variable has to exist first.
+            Cell cell = new Cell(null);
+            frame[stmt.local.slot] = cell;
+            cell.value = new LoxFunction(stmt, capture(stmt), globals, false, metrics);
+        } else {
+            define(stmt.local, stmt.name, new LoxFunction(stmt, capture(stmt), globals, false, metrics));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        LoxModule module = modules.computeIfAbsent(ModuleCache.identity(stmt.path), file -> new LoxModule(stmt.path));
+        define(stmt.local, stmt.name, module);
         return null;
     }
 
@@ -327,7 +664,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        // Tasks on other threads print to the same sink.
+        synchronized (out) {
+            if (value instanceof Double number) {
+                out.write(number);
+            } else {
+                out.write(stringify(value));
+            }
+            out.newLine();
+        }
         return null;
     }
 
@@ -338,7 +683,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
+        define(stmt.local, stmt.name, value);
         return null;
     }
 
@@ -355,11 +700,14 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
-        } else {
+        Reference reference = expr.reference;
+        if (reference == null) {
             globals.assign(expr.name, value);
+        } else if (reference.local.boxed) {
+            ((Cell) raw(reference)).value = value;
+        } else {
+            // Assigned variables are only unboxed if no closure captures them.
+            frame[reference.local.slot] = value;
         }
         return value;
     }
@@ -0,0 +1,95 @@
+package jlox;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime counters of one interpreter, registered as an MBean so they can be watched live from jconsole or
+ * {@code jcmd} while a script runs. Counters are striped, so updating them stays cheap when many isolates run at
+ * the same time.
+ * <p>
+ * Interpreters only keep metrics when the {@code jlox.metrics} system property is true. Otherwise they have none,
+ * and skip counting altogether.
+ */
+class InterpreterMetrics implements InterpreterMetricsMBean {
+    private static final AtomicLong ids = new AtomicLong();
+
+    final LongAdder statements = new LongAdder();
+    final LongAdder calls = new LongAdder();
+    // Call frames, which hold all local variables of a call.
+    final LongAdder environments = new LongAdder();
+    final LongAdder instances = new LongAdder();
+    final LongAdder boundMethods = new LongAdder();
+    final LongAdder boxedDoubles = new LongAdder();
+    final LongAccumulator maxCallDepth = new LongAccumulator(Math::max, 0);
+
+    private final ObjectName name;
+
+    private InterpreterMetrics() throws JMException {
+        this.name = new ObjectName("jlox:type=Interpreter,id=" + ids.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    }
+
+    /**
+     * Returns new registered metrics if they are enabled, or null.
+     */
+    static InterpreterMetrics create() {
+        if (!Boolean.getBoolean("jlox.metrics")) {
+            return null;
+        }
+
+        try {
+            return new InterpreterMetrics();
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register interpreter metrics.", e);
+        }
+    }
+
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone.
+        }
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getCallsMade() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getEnvironmentsAllocated() {
+        return environments.sum();
+    }
+
+    @Override
+    public long getInstancesCreated() {
+        return instances.sum();
+    }
+
+    @Override
+    public long getBoundMethodsAllocated() {
+        return boundMethods.sum();
+    }
+
+    @Override
+    public long getBoxedDoubles() {
+        return boxedDoubles.sum();
+    }
+
+    @Override
+    public long getMaxCallDepth() {
+        return maxCallDepth.get();
+    }
+}
@@ -0,0 +1,20 @@
+package jlox;
+
+/**
+ * Management interface of {@link InterpreterMetrics}. JMX requires it to be public.
+ */
+public interface InterpreterMetricsMBean {
+    long getStatementsExecuted();
+
+    long getCallsMade();
+
+    long getEnvironmentsAllocated();
+
+    long getInstancesCreated();
+
+    long getBoundMethodsAllocated();
+
+    long getBoxedDoubles();
+
+    long getMaxCallDepth();
+}
@@ -0,0 +1,102 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An independent Lox runtime: one interpreter with its own globals, error state, output sink and error stream. Isolates share
+ * nothing mutable with each other, so any number of them can run on different threads at the same time, while
+ * sharing the same compiled {@link Program}s.
+ * <p>
+ * An isolate itself is not thread-safe, and should only be used by one thread at a time.
+ */
+class Isolate implements AutoCloseable {
+    static final int EXIT_OK = 0;
+    static final int EXIT_COMPILE_ERROR = 65;
+    static final int EXIT_RUNTIME_ERROR = 70;
+
+    private final OutputSink out;
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+
+    Isolate(OutputSink out, PrintStream err) {
+        this.out = out;
+        this.reporter = new ErrorReporter(err);
+        this.interpreter = new Interpreter(out, reporter);
+    }
+
+    /**
+     * Creates an isolate whose globals are stored in the given maps, see
+     * {@link Interpreter#Interpreter(OutputSink, ErrorReporter, List)}.
+     */
+    Isolate(OutputSink out, PrintStream err, List<Map<String, Object>> globalScopes) {
+        this.out = out;
+        this.reporter = new ErrorReporter(err);
+        this.interpreter = new Interpreter(out, reporter, globalScopes);
+    }
+
+    CallStack callStack() {
+        return interpreter.callStack;
+    }
+
+    /**
+     * Reports all allocations of programs run from now on to the profiler. The programs must be instrumented by it.
+     */
+    void profileAllocations(AllocationProfiler profiler) {
+        interpreter.allocations = profiler;
+    }
+
+    /**
+     * Compiles the source, reporting any errors to this isolate's error stream. Returns null if there were errors.
+     */
+    Program compile(String source) {
+        return compile(source, null);
+    }
+
+    /**
+     * Compiles the source of the given file, see {@link Program#compile(String, Path, ErrorReporter)}.
+     */
+    Program compile(String source, Path file) {
+        reporter.hadError = false;
+        return Program.compile(source, file, reporter);
+    }
+
+    /**
+     * Runs a compiled program in this isolate, and returns the exit code of the run. All output of the program has
+     * been flushed when this returns.
+     */
+    int run(Program program) {
+        reporter.hadRuntimeError = false;
+        try {
+            interpreter.interpret(program);
+        } finally {
+            out.flush();
+        }
+        return reporter.hadRuntimeError ? EXIT_RUNTIME_ERROR : EXIT_OK;
+    }
+
+    int run(String source) {
+        return run(source, null);
+    }
+
+    int run(String source, Path file) {
+        Program program = compile(source, file);
+        if (program == null) {
+            return EXIT_COMPILE_ERROR;
+        }
+
+        return run(program);
+    }
+
+    /**
+     * Releases the isolate's interpreter metrics, if it has any. The isolate itself can still be used.
+     */
+    @Override
+    public void close() {
+        if (interpreter.metrics != null) {
+            interpreter.metrics.unregister();
+        }
+    }
+}
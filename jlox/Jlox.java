@@ -1,12 +1,14 @@
 package jlox;
 
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 
 /**
  * Lox interpreter written in Java. The entire implementation is contained within this one file, to give a overview of
@@ -16,14 +18,24 @@ import java.util.List;
  * October 2023
  */
 public class Jlox {
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-
-    private static final Interpreter interpreter = new Interpreter();
+    // Print statements bypass System.out, and are only flushed line by line when someone is watching.
+    private static final Isolate isolate = new Isolate(
+            new BufferedSink(new FileOutputStream(FileDescriptor.out), System.console() != null), System.err);
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.err.println("Usage: jlox <script>");
+        if (args.length == 2 && args[0].equals("--serve")) {
+            new ScriptServer(Paths.get(args[1])).serve();
+        } else if (args.length == 3 && args[0].equals("--connect")) {
+            System.exit(ScriptClient.run(Paths.get(args[1]), Paths.get(args[2])));
+        } else if (args.length == 3 && args[0].equals("--profile")) {
+            profileFile(args[2], Paths.get(args[1]));
+        } else if (args.length == 2 && args[0].equals("--coverage")) {
+            coverFile(args[1]);
+        } else if (args.length == 2 && args[0].equals("--allocations")) {
+            profileAllocations(args[1]);
+        } else if (args.length > 1) {
+            System.err.println("Usage: jlox [--serve <socket> | --connect <socket> <script> | "
+                    + "--profile <output> <script> | --coverage <script> | --allocations <script> | <script>]");
             System.exit(64);
         } else if (args.length == 1) {
             runFile(args[0]);
@@ -33,71 +45,91 @@ public class Jlox {
     }
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        int status = isolate.run(new String(bytes, Charset.defaultCharset()), Paths.get(path));
 
-        if (hadError) {
-            System.exit(65);
+        if (status != Isolate.EXIT_OK) {
+            System.exit(status);
         }
+    }
 
-        if (hadRuntimeError) {
-            System.exit(70);
+    /**
+     * Runs a file while sampling its call stack. The samples are written as collapsed stacks to the output file, and
+     * summarized on stderr.
+     */
+    private static void profileFile(String path, Path output) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        Program program = isolate.compile(new String(bytes, Charset.defaultCharset()), Paths.get(path));
+        if (program == null) {
+            System.exit(Isolate.EXIT_COMPILE_ERROR);
         }
-    }
 
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
+        Profiler profiler = new Profiler(isolate.callStack());
+        profiler.start();
+        int status = isolate.run(profiler.instrument(program));
+        try {
+            profiler.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-        for (;;) {
-            System.out.println("> ");
-            String line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-            run(line);
-            hadError = false;
+        profiler.writeCollapsed(output);
+        profiler.report(System.err, 20);
+        if (status != Isolate.EXIT_OK) {
+            System.exit(status);
         }
     }
 
-    private static void run(String source) {
-        Lexer lexer = new Lexer(source);
-        List<Token> tokens = lexer.lexTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        if (hadError) {
-            return;
+    /**
+     * Runs a file with every statement counted, and prints its hot lines and uncovered lines on stderr.
+     */
+    private static void coverFile(String path) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        String source = new String(bytes, Charset.defaultCharset());
+        Program program = isolate.compile(source, Paths.get(path));
+        if (program == null) {
+            System.exit(Isolate.EXIT_COMPILE_ERROR);
         }
 
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+        Coverage coverage = new Coverage();
+        int status = isolate.run(coverage.instrument(program));
 
-        interpreter.interpret(statements);
+        coverage.report(System.err, source, 20);
+        if (status != Isolate.EXIT_OK) {
+            System.exit(status);
+        }
     }
 
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
+    /**
+     * Runs a file, and prints the lines and classes that allocated the most memory on stderr.
+     */
+    private static void profileAllocations(String path) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        Program program = isolate.compile(new String(bytes, Charset.defaultCharset()), Paths.get(path));
+        if (program == null) {
+            System.exit(Isolate.EXIT_COMPILE_ERROR);
+        }
 
+        AllocationProfiler profiler = new AllocationProfiler();
+        isolate.profileAllocations(profiler);
+        int status = isolate.run(profiler.instrument(program));
 
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+        profiler.report(System.err, 20);
+        if (status != Isolate.EXIT_OK) {
+            System.exit(status);
         }
     }
 
-    static void runtimeError(RuntimeError error) {
-        System.err.printf("%s\n[line %d]\n", error.getMessage(), error.token.line);
-        hadRuntimeError = true;
-    }
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
 
-    private static void report(int line, String location, String message) {
-        System.err.printf(
-                "[line %d] Error%s: %s%n", line, location, message
-        );
-        hadError = true;
+        for (;;) {
+            System.out.println("> ");
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            isolate.run(line);
+        }
     }
-
 }
@@ -16,6 +16,7 @@ class Lexer {
         KEYWORDS.put("for", TokenType.FOR);
         KEYWORDS.put("fun", TokenType.FUN);
         KEYWORDS.put("if", TokenType.IF);
+        KEYWORDS.put("import", TokenType.IMPORT);
         KEYWORDS.put("nil", TokenType.NIL);
         KEYWORDS.put("or", TokenType.OR);
         KEYWORDS.put("print", TokenType.PRINT);
@@ -28,13 +29,22 @@ class Lexer {
     }
 
     private final String source;
+    private final ErrorReporter reporter;
     private final List<Token> tokens = new ArrayList<>();
     private int start = 0;
     private int curr = 0;
     private int line = 1;
 
-    Lexer(String source) {
+    Lexer(String source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Returns whether the word would be lexed as an identifier.
+     */
+    static boolean isIdentifier(String word) {
+        return word.matches("[A-Za-z_][A-Za-z_0-9]*") && !KEYWORDS.containsKey(word);
     }
 
     List<Token> lexTokens() {
@@ -88,7 +98,7 @@ class Lexer {
                         String str = source.substring(start + 1, curr - 1);
                         addToken(TokenType.STRING, str);
                     } else {
-                        Jlox.error(line, "Unterminated string.");
+                        reporter.error(line, "Unterminated string.");
                     }
                 }
                 case '\n' -> line++;
@@ -113,7 +123,7 @@ class Lexer {
                         TokenType type = KEYWORDS.getOrDefault(str, TokenType.IDENTIFIER);
                         addToken(type);
                     } else {
-                        Jlox.error(line, "Unexpected character " + c + ".");
+                        reporter.error(line, "Unexpected character " + c + ".");
                     }
                 }
             }
@@ -0,0 +1,32 @@
+package jlox;
+
+/**
+ * A local variable, as found by the resolver. Every local has a slot in the frame of the function declaring it.
+ * Closures get their own copy of the variables they capture, except when a variable may change after it's captured:
+ * such variables are boxed, kept in a {@link Cell} that the frame declaring them and every closure capturing them
+ * share.
+ */
+class Local {
+    final String name;
+    final int slot;
+    // Whether a closure may copy the variable. Functions and classes may be captured before they're defined.
+    private final boolean copyable;
+    // Whether the variable has been defined or captured, and how often it's read and assigned, as far as the
+    // resolver has got.
+    boolean defined = false;
+    boolean captured = false;
+    int reads = 0;
+    int assignments = 0;
+    // Only known once the resolver has left the variable's scope.
+    boolean boxed = false;
+
+    Local(String name, int slot, boolean copyable) {
+        this.name = name;
+        this.slot = slot;
+        this.copyable = copyable;
+    }
+
+    void close() {
+        boxed = captured && (assignments > 0 || !copyable);
+    }
+}
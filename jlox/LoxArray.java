@@ -0,0 +1,170 @@
+package jlox;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of Lox values, created by the {@code Array()} native. Its methods are looked up like those of an
+ * instance: {@code get(index)}, {@code set(index, value)}, {@code push(value)} and {@code length()}.
+ * <p>
+ * While an array holds nothing but numbers, they are stored unboxed in a {@code double[]}. Storing anything else
+ * switches it over to an {@code Object[]} for good.
+ * <p>
+ * Arrays can be read from any number of tasks at the same time, but must not be modified while other tasks use them.
+ */
+class LoxArray implements NativeObject {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Exactly one of the two is in use, the other is null.
+    private double[] numbers;
+    private Object[] objects;
+    private int size = 0;
+
+    LoxArray() {
+        this.numbers = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates an array holding the given elements, taking ownership of them.
+     */
+    LoxArray(Object[] elements) {
+        this.objects = elements;
+        this.size = elements.length;
+        for (Object element : elements) {
+            if (!(element instanceof Double)) {
+                return;
+            }
+        }
+
+        this.numbers = new double[Math.max(elements.length, INITIAL_CAPACITY)];
+        for (int i = 0; i < elements.length; i++) {
+            numbers[i] = (Double) elements[i];
+        }
+        this.objects = null;
+    }
+
+    static void define(Environment natives) {
+        natives.define("Array", new NativeFunction(0, (interpreter, arguments) -> new LoxArray()));
+    }
+
+    int length() {
+        return size;
+    }
+
+    Object get(int index) {
+        checkIndex(index);
+        if (numbers != null) {
+            return numbers[index];
+        }
+        return objects[index];
+    }
+
+    void set(int index, Object value) {
+        checkIndex(index);
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                numbers[index] = number;
+                return;
+            }
+            box();
+        }
+        objects[index] = value;
+    }
+
+    void push(Object value) {
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, size * 2);
+                }
+                numbers[size++] = number;
+                return;
+            }
+            box();
+        }
+
+        if (size == objects.length) {
+            objects = Arrays.copyOf(objects, Math.max(size * 2, INITIAL_CAPACITY));
+        }
+        objects[size++] = value;
+    }
+
+    Object[] toArray() {
+        if (objects != null) {
+            return Arrays.copyOf(objects, size);
+        }
+
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = numbers[i];
+        }
+        return elements;
+    }
+
+    /**
+     * Switches the storage over to boxed values.
+     */
+    private void box() {
+        objects = new Object[Math.max(numbers.length, INITIAL_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            objects[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    public int arity(String method) {
+        return switch (method) {
+            case "get", "push" -> 1;
+            case "set" -> 2;
+            case "length" -> 0;
+            default -> -1;
+        };
+    }
+
+    @Override
+    public Object invoke(String method, Object first, Object second, Object third) {
+        switch (method) {
+            case "get":
+                return get(index(first));
+            case "set":
+                set(index(first), second);
+                return second;
+            case "push":
+                push(first);
+                return null;
+            default:
+                return (double) length();
+        }
+    }
+
+    /**
+     * Converts a Lox value into an index.
+     */
+    static int index(Object index) {
+        if (!(index instanceof Double number) || number != Math.floor(number)) {
+            throw new RuntimeError("Array index must be an integer.");
+        }
+        if (number < 0 || number > Integer.MAX_VALUE) {
+            throw new RuntimeError("Array index out of bounds.");
+        }
+        return number.intValue();
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size) {
+            throw new RuntimeError("Array index out of bounds.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            NativeObject.append(builder, get(i));
+        }
+        return builder.append("]").toString();
+    }
+}
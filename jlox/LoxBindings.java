@@ -0,0 +1,17 @@
+package jlox;
+
+import javax.script.SimpleBindings;
+
+/**
+ * Bindings created by the Lox script engine. Lox only knows one kind of number, so any Java number put into the
+ * bindings is stored as a double.
+ */
+class LoxBindings extends SimpleBindings {
+    @Override
+    public Object put(String name, Object value) {
+        if (value instanceof Number number && !(value instanceof Double)) {
+            value = number.doubleValue();
+        }
+        return super.put(name, value);
+    }
+}
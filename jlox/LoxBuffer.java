@@ -0,0 +1,161 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed size block of memory outside the Java heap, for large amounts of numeric data that the garbage collector
+ * shouldn't have to scan. Buffers are created by the {@code Buffer(bytes)} native, or by {@code mapFile(path)}, which
+ * maps a file into memory read-only without copying it.
+ * <p>
+ * Buffers are read and written as doubles or 32-bit ints, indexed in units of the type's size, in little-endian
+ * byte order:
+ * <ul>
+ *     <li>{@code getDouble(index)}, {@code setDouble(index, value)}, {@code fillDouble(value)}</li>
+ *     <li>{@code getInt(index)}, {@code setInt(index, value)}, {@code fillInt(value)}, truncating values towards
+ *     zero</li>
+ *     <li>{@code size()} in bytes, {@code slice(offset, length)} for a view of a range of bytes without copying, and
+ *     {@code copyTo(target, offset)} to copy the whole buffer into another at the given byte offset</li>
+ * </ul>
+ * Buffers are backed by direct and mapped {@link ByteBuffer}s, so a single buffer holds at most 2 GiB.
+ */
+class LoxBuffer implements NativeObject {
+    private final ByteBuffer bytes;
+
+    private LoxBuffer(ByteBuffer bytes) {
+        this.bytes = bytes.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static void define(Environment natives) {
+        natives.define("Buffer", new NativeFunction(1, (interpreter, arguments) ->
+                new LoxBuffer(ByteBuffer.allocateDirect(size(arguments.get(0))))));
+        natives.define("mapFile", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof String path)) {
+                throw new RuntimeError("File path must be a string.");
+            }
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new RuntimeError("Buffers can hold at most 2 GiB.");
+                }
+                return new LoxBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not map '%s': %s", path, e.getMessage()));
+            }
+        }));
+    }
+
+    private static int size(Object size) {
+        if (!(size instanceof Double number) || number != Math.floor(number) || number < 0) {
+            throw new RuntimeError("Buffer size must be a non-negative integer.");
+        }
+        if (number > Integer.MAX_VALUE) {
+            throw new RuntimeError("Buffers can hold at most 2 GiB.");
+        }
+        return number.intValue();
+    }
+
+    /**
+     * Returns the byte offset of the element at the index.
+     */
+    private int offset(Object index, int elementSize) {
+        if (!(index instanceof Double number) || number != Math.floor(number)) {
+            throw new RuntimeError("Buffer index must be an integer.");
+        }
+        if (number < 0 || (number + 1) * elementSize > bytes.capacity()) {
+            throw new RuntimeError("Buffer index out of bounds.");
+        }
+        return number.intValue() * elementSize;
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new RuntimeError("Buffers can only hold numbers.");
+    }
+
+    private LoxBuffer slice(Object offset, Object length) {
+        int from = size(offset);
+        int count = size(length);
+        if ((long) from + count > bytes.capacity()) {
+            throw new RuntimeError("Slice out of bounds.");
+        }
+        return new LoxBuffer(bytes.slice(from, count));
+    }
+
+    private void copyTo(Object target, Object offset) {
+        if (!(target instanceof LoxBuffer buffer)) {
+            throw new RuntimeError("Can only copy to a buffer.");
+        }
+        int at = size(offset);
+        if ((long) at + bytes.capacity() > buffer.bytes.capacity()) {
+            throw new RuntimeError("Copy out of bounds.");
+        }
+        buffer.bytes.put(at, bytes, 0, bytes.capacity());
+    }
+
+    private void fillDouble(double value) {
+        for (int offset = 0; offset + Double.BYTES <= bytes.capacity(); offset += Double.BYTES) {
+            bytes.putDouble(offset, value);
+        }
+    }
+
+    private void fillInt(int value) {
+        for (int offset = 0; offset + Integer.BYTES <= bytes.capacity(); offset += Integer.BYTES) {
+            bytes.putInt(offset, value);
+        }
+    }
+
+    @Override
+    public int arity(String method) {
+        return switch (method) {
+            case "size" -> 0;
+            case "getDouble", "getInt", "fillDouble", "fillInt" -> 1;
+            case "setDouble", "setInt", "slice", "copyTo" -> 2;
+            default -> -1;
+        };
+    }
+
+    @Override
+    public Object invoke(String method, Object first, Object second, Object third) {
+        try {
+            switch (method) {
+                case "size":
+                    return (double) bytes.capacity();
+                case "getDouble":
+                    return bytes.getDouble(offset(first, Double.BYTES));
+                case "getInt":
+                    return (double) bytes.getInt(offset(first, Integer.BYTES));
+                case "setDouble":
+                    bytes.putDouble(offset(first, Double.BYTES), number(second));
+                    return second;
+                case "setInt":
+                    bytes.putInt(offset(first, Integer.BYTES), (int) number(second));
+                    return second;
+                case "fillDouble":
+                    fillDouble(number(first));
+                    return null;
+                case "fillInt":
+                    fillInt((int) number(first));
+                    return null;
+                case "slice":
+                    return slice(first, second);
+                default:
+                    copyTo(first, second);
+                    return null;
+            }
+        } catch (ReadOnlyBufferException e) {
+            throw new RuntimeError("Buffer is read-only.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<buffer %d bytes>", bytes.capacity());
+    }
+}
@@ -0,0 +1,30 @@
+package jlox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for a call of a Lox function or method. Only calls taking longer than the threshold are recorded, which
+ * can be changed in the recording settings.
+ */
+@Name("jlox.Call")
+@Label("Lox Call")
+@Description("A call of a Lox function or method")
+@Category("Lox")
+@Threshold("1 ms")
+@StackTrace(false)
+class LoxCallEvent extends jdk.jfr.Event {
+    @Label("Function")
+    String function;
+
+    @Label("Line")
+    @Description("Line the function is declared on")
+    int line;
+
+    @Label("Call Depth")
+    int depth;
+}
@@ -32,12 +32,32 @@ class LoxClass implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        LoxInstantiationEvent event = null;
+        if (LoxEvents.recording) {
+            event = new LoxInstantiationEvent();
+            event.begin();
+        }
+        if (interpreter.metrics != null) {
+            interpreter.metrics.instances.increment();
+        }
+        if (interpreter.allocations != null) {
+            interpreter.allocations.instance(this);
+        }
         LoxInstance instance = new LoxInstance(this);
         LoxFunction initializer = findMethod("init");
         if (initializer != null) {
             initializer.bind(instance).call(interpreter, arguments);
         }
 
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.className = name;
+                event.depth = interpreter.callStack.depth();
+                event.commit();
+            }
+        }
+
         return instance;
     }
 
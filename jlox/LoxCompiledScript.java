@@ -0,0 +1,56 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * A compiled Lox script. Evaluating it only runs the already resolved program in a fresh isolate on top of the
+ * context's bindings. Lox statements produce no value, so evaluation always returns null.
+ */
+class LoxCompiledScript extends CompiledScript {
+    private final ScriptEngine engine;
+    private final Program program;
+
+    LoxCompiledScript(ScriptEngine engine, Program program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        List<Map<String, Object>> globalScopes = new ArrayList<>(2);
+        globalScopes.add(context.getBindings(ScriptContext.ENGINE_SCOPE));
+        Bindings global = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+        if (global != null) {
+            globalScopes.add(global);
+        }
+
+        OutputSink out = new WriterSink(context.getWriter());
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(errors, true, StandardCharsets.UTF_8);
+
+        int status;
+        try (Isolate isolate = new Isolate(out, err, globalScopes)) {
+            status = isolate.run(program);
+        }
+        if (status != Isolate.EXIT_OK) {
+            throw new ScriptException(errors.toString(StandardCharsets.UTF_8).trim());
+        }
+        return null;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,49 @@
+package jlox;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Tells whether a flight recording is running, so the interpreter only creates its JFR events, and loads their
+ * classes, while one is. A listener keeps the flag up to date as recordings start and stop.
+ * <p>
+ * Registering the listener takes tens of milliseconds when the flight recorder isn't running yet, so then it's
+ * registered in the background, in time for recordings started later with {@code jcmd}.
+ */
+final class LoxEvents {
+    static volatile boolean recording = false;
+
+    static {
+        if (FlightRecorder.isInitialized()) {
+            listen();
+        } else {
+            Thread listener = new Thread(LoxEvents::listen, "lox-jfr-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    private LoxEvents() {
+    }
+
+    private static void listen() {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private static void update(FlightRecorder recorder) {
+        recording = recorder.getRecordings().stream()
+                .anyMatch(running -> running.getState() == RecordingState.RUNNING);
+    }
+}
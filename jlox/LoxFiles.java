@@ -0,0 +1,251 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Natives for reading and writing UTF-8 text files:
+ * <ul>
+ *     <li>{@code readFile(path)} returns the whole file as a string.</li>
+ *     <li>{@code lines(path)} returns a line reader, whose {@code next()} returns the next line without its line
+ *     terminator, or nil at the end of the file. The file is memory-mapped a window at a time, and only the lines
+ *     asked for are decoded, so files of any size are streamed in bounded memory. {@code close()} stops reading
+ *     early.</li>
+ *     <li>{@code writeFile(path)} returns a buffered writer with {@code write(value)}, {@code writeLine(value)} and
+ *     {@code close()} methods, which format values like print. Output is only guaranteed to reach the file once the
+ *     writer is closed.</li>
+ *     <li>{@code tempFile()} creates an empty temporary file, which is deleted when the process exits, and returns
+ *     its path.</li>
+ * </ul>
+ */
+class LoxFiles {
+    private LoxFiles() {
+    }
+
+    static void define(Environment natives) {
+        natives.define("readFile", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try {
+                return Files.readString(path);
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not read '%s': %s", path, e.getMessage()));
+            }
+        }));
+        natives.define("lines", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try {
+                return new LineReader(FileChannel.open(path, StandardOpenOption.READ));
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not read '%s': %s", path, e.getMessage()));
+            }
+        }));
+        natives.define("writeFile", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try {
+                return new Writer(path, FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING));
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not write '%s': %s", path, e.getMessage()));
+            }
+        }));
+        natives.define("tempFile", new NativeFunction(0, (interpreter, arguments) -> {
+            try {
+                Path path = Files.createTempFile("jlox", ".txt");
+                path.toFile().deleteOnExit();
+                return path.toString();
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not create a temporary file: %s", e.getMessage()));
+            }
+        }));
+    }
+
+    private static Path path(Object path) {
+        if (path instanceof String string) {
+            return Paths.get(string);
+        }
+        throw new RuntimeError("File path must be a string.");
+    }
+
+    private static class LineReader implements NativeObject {
+        // Bytes mapped at a time. Windows grow when a single line doesn't fit.
+        private static final int WINDOW_SIZE = 1 << 24;
+
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        // File position of the window.
+        private long start = 0;
+        private int windowSize = WINDOW_SIZE;
+        private boolean closed = false;
+
+        LineReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private Object next() throws IOException {
+            if (closed) {
+                return null;
+            }
+            if (window == null) {
+                map(0);
+            }
+
+            for (;;) {
+                int from = window.position();
+                for (int i = from; i < window.limit(); i++) {
+                    if (window.get(i) == '\n') {
+                        window.position(i + 1);
+                        return decode(from, i);
+                    }
+                }
+
+                long position = start + from;
+                if (start + window.limit() >= channel.size()) {
+                    // Last line, without a line terminator.
+                    if (from == window.limit()) {
+                        close();
+                        return null;
+                    }
+                    window.position(window.limit());
+                    return decode(from, window.limit());
+                }
+
+                // The line continues past the window, so map again starting at the line.
+                if (from == 0) {
+                    // Mapped windows can't be larger than this.
+                    if (windowSize == Integer.MAX_VALUE) {
+                        throw new RuntimeError("Line too long.");
+                    }
+                    windowSize = (int) Math.min((long) windowSize * 2, Integer.MAX_VALUE);
+                }
+                map(position);
+            }
+        }
+
+        private void map(long position) throws IOException {
+            start = position;
+            long size = Math.min(windowSize, channel.size() - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+
+        private String decode(int from, int to) {
+            if (to > from && window.get(to - 1) == '\r') {
+                to--;
+            }
+            return StandardCharsets.UTF_8.decode(window.slice(from, to - from)).toString();
+        }
+
+        private void close() throws IOException {
+            closed = true;
+            window = null;
+            channel.close();
+        }
+
+        @Override
+        public int arity(String method) {
+            return switch (method) {
+                case "next", "close" -> 0;
+                default -> -1;
+            };
+        }
+
+        @Override
+        public Object invoke(String method, Object first, Object second, Object third) {
+            try {
+                if (method.equals("next")) {
+                    return next();
+                }
+                close();
+                return null;
+            } catch (IOException e) {
+                throw new RuntimeError("Could not read lines: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<lines>";
+        }
+    }
+
+    private static class Writer implements NativeObject {
+        private final Path path;
+        private final FileChannel channel;
+        private final BufferedSink out;
+        private boolean closed = false;
+
+        Writer(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+            this.out = new BufferedSink(Channels.newOutputStream(channel), false);
+        }
+
+        private void write(Object value) {
+            if (closed) {
+                throw new RuntimeError("Writer is closed.");
+            }
+
+            if (value instanceof Double number) {
+                out.write(number);
+            } else if (value instanceof String string) {
+                out.write(string);
+            } else {
+                StringBuilder builder = new StringBuilder();
+                NativeObject.append(builder, value);
+                out.write(builder.toString());
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeError(String.format("Could not write '%s': %s", path, e.getMessage()));
+            }
+            if (out.failed()) {
+                throw new RuntimeError(String.format("Could not write '%s'.", path));
+            }
+        }
+
+        @Override
+        public int arity(String method) {
+            return switch (method) {
+                case "write", "writeLine" -> 1;
+                case "close" -> 0;
+                default -> -1;
+            };
+        }
+
+        @Override
+        public Object invoke(String method, Object first, Object second, Object third) {
+            switch (method) {
+                case "write":
+                    write(first);
+                    return null;
+                case "writeLine":
+                    write(first);
+                    out.newLine();
+                    return null;
+                default:
+                    close();
+                    return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<writer>";
+        }
+    }
+}
@@ -2,21 +2,41 @@ package jlox;
 
 import java.util.List;
 
+/**
+ * A Lox function or method. Functions only keep the variables they capture, in a flat array of upvalues, see
+ * {@link Resolver}. Methods bound to an instance also keep the instance, as 'this'.
+ */
 class LoxFunction implements LoxCallable {
     private final Stmt.Function declaration;
-    private final Environment closure;
+    final Object[] upvalues;
+    // The globals of the program or module that defined the function, which its global variables refer to.
+    private final Environment globals;
+    // The instance a method is bound to, if any.
+    final LoxInstance receiver;
     private final boolean isInitializer;
+    // Metrics of the interpreter that created the function, if enabled.
+    private final InterpreterMetrics metrics;
 
-    LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    LoxFunction(Stmt.Function declaration, Object[] upvalues, Environment globals, boolean isInitializer,
+                InterpreterMetrics metrics) {
+        this(declaration, upvalues, globals, null, isInitializer, metrics);
+    }
+
+    private LoxFunction(Stmt.Function declaration, Object[] upvalues, Environment globals, LoxInstance receiver,
+                        boolean isInitializer, InterpreterMetrics metrics) {
         this.declaration = declaration;
-        this.closure = closure;
+        this.upvalues = upvalues;
+        this.globals = globals;
+        this.receiver = receiver;
         this.isInitializer = isInitializer;
+        this.metrics = metrics;
     }
 
     LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new LoxFunction(declaration, environment, isInitializer);
+        if (metrics != null) {
+            metrics.boundMethods.increment();
+        }
+        return new LoxFunction(declaration, upvalues, globals, instance, isInitializer, metrics);
     }
 
     @Override
@@ -26,22 +46,61 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+        InterpreterMetrics metrics = interpreter.metrics;
+        if (metrics != null) {
+            metrics.environments.increment();
+        }
+        Object[] frame = new Object[declaration.frameSize];
+        if (receiver != null) {
+            // 'this' is the first variable of methods.
+            frame[0] = receiver;
+        }
+        Local[] parameters = declaration.parameters;
+        for (int i = 0; i < parameters.length; i++) {
+            Object argument = arguments.get(i);
+            frame[parameters[i].slot] = parameters[i].boxed ? new Cell(argument) : argument;
         }
 
+        interpreter.callStack.push(declaration, interpreter.frame(), interpreter.upvalues);
+        if (metrics != null) {
+            metrics.maxCallDepth.accumulate(interpreter.callStack.depth());
+        }
+        LoxCallEvent event = null;
+        if (LoxEvents.recording) {
+            event = new LoxCallEvent();
+            event.begin();
+        }
+        Environment callerGlobals = interpreter.globals;
+        Object[] callerUpvalues = interpreter.upvalues;
+        interpreter.globals = globals;
+        interpreter.upvalues = upvalues;
         try {
-            interpreter.executeBlock(declaration.body, environment);
+            interpreter.execute(declaration.body, frame);
         } catch (Return returnValue) {
             if (isInitializer) {
-                return closure.getAt(0, "this");
+                return receiver;
             }
             return returnValue.value;
+        } catch (RuntimeError error) {
+            error.locate(globals.module);
+            throw error;
+        } finally {
+            interpreter.globals = callerGlobals;
+            interpreter.upvalues = callerUpvalues;
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.function = declaration.name.lexeme;
+                    event.line = declaration.name.line;
+                    event.depth = interpreter.callStack.depth();
+                    event.commit();
+                }
+            }
+            interpreter.callStack.pop();
         }
 
         if (isInitializer) {
-            return closure.getAt(0, "this");
+            return receiver;
         }
         return null;
     }
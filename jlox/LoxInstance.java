@@ -1,11 +1,17 @@
 package jlox;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * An instance of a Lox class. Like {@link Environment}s, instances may be shared between tasks, so fields live in a
+ * concurrent map, with nil stored as a sentinel.
+ */
 class LoxInstance {
-    private LoxClass klass;
-    private final Map<String, Object> fields = new HashMap<>();
+    private static final Object NIL = new Object();
+
+    final LoxClass klass;
+    final Map<String, Object> fields = new ConcurrentHashMap<>();
 
     LoxInstance(LoxClass klass) {
         this.klass = klass;
@@ -17,8 +23,9 @@ class LoxInstance {
     }
 
     Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        Object value = fields.get(name.lexeme);
+        if (value != null) {
+            return value == NIL ? null : value;
         }
 
         LoxFunction method = klass.findMethod(name.lexeme);
@@ -30,6 +37,6 @@ class LoxInstance {
     }
 
     void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        fields.put(name.lexeme, value == null ? NIL : value);
     }
 }
@@ -0,0 +1,23 @@
+package jlox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the creation of a Lox instance, lasting as long as its initializer ran.
+ */
+@Name("jlox.Instantiation")
+@Label("Lox Instantiation")
+@Description("Creation of an instance of a Lox class")
+@Category("Lox")
+@StackTrace(false)
+class LoxInstantiationEvent extends jdk.jfr.Event {
+    @Label("Class")
+    String className;
+
+    @Label("Call Depth")
+    int depth;
+}
@@ -0,0 +1,258 @@
+package jlox;
+
+import java.util.Arrays;
+
+/**
+ * Hash map of Lox values, created by the {@code Map()} native, with the methods {@code get(key)}, {@code set(key,
+ * value)}, {@code has(key)}, {@code remove(key)}, {@code size()}, {@code keys()} and {@code values()}. Keys are
+ * compared like Lox compares values with {@code ==}, so any value can be a key, and instances are compared by
+ * identity.
+ * <p>
+ * Entries live in parallel arrays in insertion order, which is also the order keys and values are iterated in. An
+ * open addressing index of twice their capacity, probed linearly, maps hashes to entry positions. Nothing is
+ * allocated per entry. Removed entries are left behind as holes until the next resize compacts them.
+ * <p>
+ * Strings and integral numbers, the most common keys, are hashed and compared without going through
+ * {@link Object#equals}. Like arrays, maps must not be modified while other tasks use them.
+ */
+class LoxMap implements NativeObject {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int EMPTY = -1;
+    private static final int REMOVED = -2;
+    // Stands in for the key of removed entries.
+    private static final Object HOLE = new Object();
+
+    // Entry position for every slot, or EMPTY or REMOVED.
+    private int[] index;
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    // Entries in use, including holes.
+    private int used = 0;
+    private int size = 0;
+
+    LoxMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    static void define(Environment natives) {
+        natives.define("Map", new NativeFunction(0, (interpreter, arguments) -> new LoxMap()));
+    }
+
+    Object get(Object key) {
+        int entry = find(key, hash(key));
+        return entry < 0 ? null : values[entry];
+    }
+
+    boolean has(Object key) {
+        return find(key, hash(key)) >= 0;
+    }
+
+    void set(Object key, Object value) {
+        int hash = hash(key);
+        int entry = find(key, hash);
+        if (entry >= 0) {
+            values[entry] = value;
+            return;
+        }
+
+        if (used == keys.length) {
+            // Only grow when compacting the holes wouldn't make enough room.
+            allocate(size >= keys.length / 2 ? keys.length * 2 : keys.length);
+        }
+        keys[used] = key;
+        values[used] = value;
+        hashes[used] = hash;
+        index[freeSlot(hash)] = used++;
+        size++;
+    }
+
+    Object remove(Object key) {
+        int hash = hash(key);
+        int mask = index.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == EMPTY) {
+                return null;
+            }
+            if (entry >= 0 && hashes[entry] == hash && equal(keys[entry], key)) {
+                Object value = values[entry];
+                index[slot] = REMOVED;
+                keys[entry] = HOLE;
+                values[entry] = null;
+                size--;
+                return value;
+            }
+        }
+    }
+
+    LoxArray keys() {
+        return entries(keys);
+    }
+
+    LoxArray values() {
+        return entries(values);
+    }
+
+    private LoxArray entries(Object[] column) {
+        Object[] elements = new Object[size];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != HOLE) {
+                elements[count++] = column[i];
+            }
+        }
+        return new LoxArray(elements);
+    }
+
+    /**
+     * Returns the entry position of the key, or -1 if it's not in the map.
+     */
+    private int find(Object key, int hash) {
+        int mask = index.length - 1;
+        if (key instanceof String string) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = index[slot];
+                if (entry == EMPTY) {
+                    return -1;
+                }
+                if (entry >= 0 && hashes[entry] == hash
+                        && (keys[entry] == string || keys[entry] instanceof String other && other.equals(string))) {
+                    return entry;
+                }
+            }
+        }
+
+        if (key instanceof Double number) {
+            long bits = Double.doubleToLongBits(number);
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = index[slot];
+                if (entry == EMPTY) {
+                    return -1;
+                }
+                if (entry >= 0 && hashes[entry] == hash
+                        && keys[entry] instanceof Double other && Double.doubleToLongBits(other) == bits) {
+                    return entry;
+                }
+            }
+        }
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry >= 0 && hashes[entry] == hash && equal(keys[entry], key)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns the first slot for the hash that isn't in use. The key must not be in the map.
+     */
+    private int freeSlot(int hash) {
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        while (index[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Replaces the entry arrays with ones of the given capacity, dropping holes, and rebuilds the index.
+     */
+    private void allocate(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldUsed = used;
+
+        index = new int[capacity * 2];
+        Arrays.fill(index, EMPTY);
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        used = 0;
+
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldKeys[i] != HOLE) {
+                keys[used] = oldKeys[i];
+                values[used] = oldValues[i];
+                hashes[used] = oldHashes[i];
+                index[freeSlot(hashes[used])] = used++;
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int hash;
+        if (key instanceof String string) {
+            hash = string.hashCode();
+        } else if (key instanceof Double number) {
+            double value = number;
+            // The low bits of Double.hashCode() are all zero for small integers.
+            long bits = value == (long) value ? (long) value : Double.doubleToLongBits(value);
+            hash = Long.hashCode(bits * 0x9E3779B97F4A7C15L);
+        } else {
+            hash = key == null ? 0 : key.hashCode();
+        }
+        // Spread the high bits down, since only the low ones pick the slot.
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int arity(String method) {
+        return switch (method) {
+            case "get", "has", "remove" -> 1;
+            case "set" -> 2;
+            case "size", "keys", "values" -> 0;
+            default -> -1;
+        };
+    }
+
+    @Override
+    public Object invoke(String method, Object first, Object second, Object third) {
+        switch (method) {
+            case "get":
+                return get(first);
+            case "has":
+                return has(first);
+            case "remove":
+                return remove(first);
+            case "set":
+                set(first, second);
+                return second;
+            case "size":
+                return (double) size;
+            case "keys":
+                return keys();
+            default:
+                return values();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] == HOLE) {
+                continue;
+            }
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            NativeObject.append(builder, keys[i]);
+            builder.append(": ");
+            NativeObject.append(builder, values[i]);
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -0,0 +1,70 @@
+package jlox;
+
+import java.nio.file.Path;
+
+/**
+ * A module imported with {@code import "path";}. Modules load lazily: the file is only compiled and run when one of
+ * its exports is first used, so imports that are never used cost nothing. A module runs in globals of its own, and
+ * every global it defines is exported as a property of the module.
+ * <p>
+ * Tasks may use a module at the same time, but it's only loaded once. A module that fails to load keeps failing with
+ * the same error.
+ */
+class LoxModule {
+    final Path path;
+    // Null until loaded.
+    private volatile Environment exports;
+    private RuntimeError failure;
+    private boolean loading = false;
+
+    LoxModule(Path path) {
+        this.path = path;
+    }
+
+    Object get(Interpreter interpreter, Token name) {
+        Environment exports = this.exports;
+        if (exports == null) {
+            exports = load(interpreter, name);
+        }
+
+        if (!exports.defines(name.lexeme)) {
+            throw new RuntimeError(name, String.format("Undefined property '%s'.", name.lexeme));
+        }
+        return exports.get(name);
+    }
+
+    /**
+     * Returns the globals of the module, or null if it hasn't been loaded.
+     */
+    Environment exports() {
+        return exports;
+    }
+
+    private synchronized Environment load(Interpreter interpreter, Token name) {
+        if (exports != null) {
+            return exports;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (loading) {
+            throw new RuntimeError(name, String.format("Module '%s' is used before it has finished loading.", path));
+        }
+
+        loading = true;
+        try {
+            exports = interpreter.runModule(ModuleCache.compile(path), path);
+            return exports;
+        } catch (RuntimeError error) {
+            failure = error.token == null ? new RuntimeError(name, error.getMessage()) : error;
+            throw failure;
+        } finally {
+            loading = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<module %s>", path);
+    }
+}
@@ -0,0 +1,38 @@
+package jlox;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Service interface for modules of native functions written in Java. Modules are found with
+ * {@link java.util.ServiceLoader}: list the implementing class in {@code META-INF/services/jlox.LoxNativeModule} of
+ * its jar, and put the jar on the classpath. Every interpreter then has the module's natives as globals.
+ * <p>
+ * Natives receive and return plain Lox values: {@link Double}, {@link String}, {@link Boolean} or null, where other
+ * numbers returned are converted to doubles. Throwing any runtime exception raises a Lox runtime error with the
+ * exception's message at the call.
+ */
+public interface LoxNativeModule {
+    void register(Natives natives);
+
+    interface Natives {
+        /**
+         * Defines a native function taking exactly {@code arity} arguments. A pure native always returns the same
+         * value for the same arguments and has no side effects, so calls of it with constant arguments are run when
+         * the script is compiled.
+         */
+        void define(String name, int arity, boolean pure, Function<List<Object>, Object> body);
+
+        /**
+         * Defines a native function of one argument, which is called without collecting the argument in a list.
+         */
+        void define(String name, boolean pure, UnaryOperator<Object> body);
+
+        /**
+         * Defines a native function of two arguments, which is called without collecting the arguments in a list.
+         */
+        void define(String name, boolean pure, BinaryOperator<Object> body);
+    }
+}
@@ -0,0 +1,23 @@
+package jlox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a runtime error that ended a Lox program.
+ */
+@Name("jlox.RuntimeError")
+@Label("Lox Runtime Error")
+@Description("A runtime error that ended a Lox program")
+@Category("Lox")
+@StackTrace(false)
+class LoxRuntimeErrorEvent extends jdk.jfr.Event {
+    @Label("Message")
+    String message;
+
+    @Label("Line")
+    int line;
+}
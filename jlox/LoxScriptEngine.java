@@ -0,0 +1,76 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+
+/**
+ * JSR-223 script engine running Lox. Scripts are compiled once into a {@link Program}, which can then be evaluated
+ * any number of times against different contexts.
+ * <p>
+ * Lox globals are read from and defined directly in the engine scope bindings of the context, falling back on the
+ * global scope bindings, so nothing is copied in or out of the bindings on an evaluation.
+ */
+class LoxScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final ScriptEngineFactory factory;
+
+    LoxScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+        setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return compile(reader).eval(context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(errors, true, StandardCharsets.UTF_8));
+        Program program = Program.compile(script, reporter);
+        if (program == null) {
+            throw new ScriptException(errors.toString(StandardCharsets.UTF_8).trim());
+        }
+
+        return new LoxCompiledScript(this, program);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        StringWriter source = new StringWriter();
+        try {
+            script.transferTo(source);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+
+        return compile(source.toString());
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new LoxBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+}
@@ -0,0 +1,91 @@
+package jlox;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+/**
+ * Makes Lox available through {@code javax.script}, e.g. {@code new ScriptEngineManager().getEngineByName("lox")}.
+ */
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+    private static final String VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return "jlox";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("lox");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-lox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("lox", "jlox");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Lox";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.NAME -> getNames().get(0);
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            // Not thread-safe, since bindings handed to an engine are plain maps shared by every evaluation.
+            case "THREADING" -> null;
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return String.format("%s.%s(%s)", obj, m, String.join(", ", args));
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        // Lox strings have no escape sequences, so there is no way to write a quote inside one.
+        if (toDisplay.contains("\"")) {
+            throw new IllegalArgumentException("Lox strings can't contain '\"'.");
+        }
+        return String.format("print \"%s\";", toDisplay);
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return Stream.of(statements)
+                .map(statement -> statement.strip().endsWith(";") || statement.strip().endsWith("}")
+                        ? statement : statement + ";")
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new LoxScriptEngine(this);
+    }
+}
@@ -0,0 +1,24 @@
+package jlox;
+
+/**
+ * Native math functions, shipped as a {@link LoxNativeModule} like any third party module would be.
+ */
+public class MathModule implements LoxNativeModule {
+    @Override
+    public void register(Natives natives) {
+        natives.define("sqrt", true, x -> Math.sqrt(number(x)));
+        natives.define("abs", true, x -> Math.abs(number(x)));
+        natives.define("floor", true, x -> Math.floor(number(x)));
+        natives.define("ceil", true, x -> Math.ceil(number(x)));
+        natives.define("pow", true, (x, y) -> Math.pow(number(x), number(y)));
+        natives.define("min", true, (x, y) -> Math.min(number(x), number(y)));
+        natives.define("max", true, (x, y) -> Math.max(number(x), number(y)));
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new IllegalArgumentException("Operands must be numbers.");
+    }
+}
@@ -0,0 +1,151 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled modules of the whole process, by canonical path. A module is compiled again only when the hash of its
+ * file's content changes, so isolates importing the same module share a single compiled {@link Program}. Modules
+ * that fail to compile are cached with their errors.
+ * <p>
+ * Every module is compiled with an error reporter of its own, so any number of them can be compiled in parallel.
+ */
+class ModuleCache {
+    private record Entry(byte[] hash, Program program, String errors) {
+    }
+
+    private static final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    private ModuleCache() {
+    }
+
+    /**
+     * Returns the compiled module at the path. Throws a {@link RuntimeError} without a token if the module can't be
+     * read or doesn't compile.
+     */
+    static Program compile(Path path) {
+        Entry entry = entry(path);
+        if (entry.program() == null) {
+            throw new RuntimeError(String.format("Could not compile module '%s':\n%s", path, entry.errors()));
+        }
+        return entry.program();
+    }
+
+    /**
+     * Compiles the modules at the paths, and all modules they import in turn, in parallel, and reports their errors.
+     * The errors of each module are reported together, with the modules in the order they are first imported, going
+     * depth first, so the report doesn't depend on which module finished compiling first. Modules that can't be read
+     * are skipped.
+     */
+    static void compileAll(List<Path> paths, ErrorReporter reporter) {
+        Map<Path, CompletableFuture<Entry>> modules = new ConcurrentHashMap<>();
+        for (Path path : paths) {
+            submit(path, modules);
+        }
+
+        Set<Path> reported = new HashSet<>();
+        for (Path path : paths) {
+            report(path, modules, reported, reporter);
+        }
+    }
+
+    private static void submit(Path path, Map<Path, CompletableFuture<Entry>> modules) {
+        modules.computeIfAbsent(path, module -> CompletableFuture.supplyAsync(() -> {
+            Entry entry;
+            try {
+                entry = entry(module);
+            } catch (RuntimeError error) {
+                return null;
+            }
+            if (entry.program() != null) {
+                // Start on the imports before this module is done, so waiting for it means they're known.
+                for (Path dependency : entry.program().imports) {
+                    submit(dependency, modules);
+                }
+            }
+            return entry;
+        }));
+    }
+
+    private static void report(Path path, Map<Path, CompletableFuture<Entry>> modules, Set<Path> reported,
+                               ErrorReporter reporter) {
+        if (!reported.add(path)) {
+            return;
+        }
+
+        Entry entry = modules.get(path).join();
+        if (entry == null) {
+            return;
+        }
+        if (entry.program() == null) {
+            reporter.moduleErrors(path, entry.errors());
+            return;
+        }
+        for (Path dependency : entry.program().imports) {
+            report(dependency, modules, reported, reporter);
+        }
+    }
+
+    /**
+     * Returns the real path of the module, which identifies it however it's imported, or the path itself if the module
+     * can't be found.
+     */
+    static Path identity(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path;
+        }
+    }
+
+    /**
+     * Returns the cache entry for the current content of the module, compiling it if needed. Throws a
+     * {@link RuntimeError} without a token if the module can't be read.
+     */
+    private static Entry entry(Path path) {
+        Path file;
+        byte[] source;
+        try {
+            file = path.toRealPath();
+            source = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new RuntimeError(String.format("Could not read module '%s'.", path));
+        }
+
+        byte[] hash = hash(source);
+        Entry entry = entries.get(file);
+        if (entry == null || !Arrays.equals(entry.hash(), hash)) {
+            entry = compile(file, source, hash);
+            entries.put(file, entry);
+        }
+        return entry;
+    }
+
+    private static Entry compile(Path file, byte[] source, byte[] hash) {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(errors, true, Charset.defaultCharset()));
+        Program program = Program.compileFile(new String(source, Charset.defaultCharset()), file, reporter);
+        return new Entry(hash, program, errors.toString(Charset.defaultCharset()).trim());
+    }
+
+    private static byte[] hash(byte[] source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
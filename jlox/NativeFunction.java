@@ -0,0 +1,69 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A function implemented in Java. Natives report errors by throwing a {@link RuntimeError} without a token, which
+ * the interpreter attributes to the call.
+ * <p>
+ * Natives of at most three arguments can have a {@link Body} that takes them directly, which the interpreter calls
+ * without collecting the arguments in a list. Pure natives always return the same value for the same arguments, and
+ * have no side effects. The parser runs calls of them with constant arguments right away, see {@link Expr.Folded}.
+ */
+class NativeFunction implements LoxCallable {
+    /**
+     * Body of a native taking at most three arguments. Arguments past the native's arity are null.
+     */
+    @FunctionalInterface
+    interface Body {
+        Object call(Interpreter interpreter, Object first, Object second, Object third);
+    }
+
+    private final int arity;
+    final boolean pure;
+    // Exactly one of the bodies is set.
+    private final BiFunction<Interpreter, List<Object>, Object> body;
+    final Body direct;
+
+    NativeFunction(int arity, BiFunction<Interpreter, List<Object>, Object> body) {
+        this(arity, false, body);
+    }
+
+    NativeFunction(int arity, boolean pure, BiFunction<Interpreter, List<Object>, Object> body) {
+        this.arity = arity;
+        this.pure = pure;
+        this.body = body;
+        this.direct = null;
+    }
+
+    NativeFunction(int arity, boolean pure, Body direct) {
+        if (arity > 3) {
+            throw new IllegalArgumentException("Direct natives take at most three arguments.");
+        }
+        this.arity = arity;
+        this.pure = pure;
+        this.body = null;
+        this.direct = direct;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (direct != null) {
+            Object[] values = Arrays.copyOf(arguments.toArray(), 3);
+            return direct.call(interpreter, values[0], values[1], values[2]);
+        }
+        return body.apply(interpreter, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
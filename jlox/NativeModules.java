@@ -0,0 +1,83 @@
+package jlox;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * The natives of all {@link LoxNativeModule}s on the classpath. Modules are loaded once per process, and their
+ * natives are shared by all interpreters, so calls that the parser folded hold on to the same natives that every
+ * interpreter looks up.
+ */
+class NativeModules {
+    private static final Map<String, NativeFunction> natives = load();
+
+    private NativeModules() {
+    }
+
+    static void define(Environment environment) {
+        natives.forEach(environment::define);
+    }
+
+    /**
+     * Returns the pure native of the given name, or null if there is none.
+     */
+    static NativeFunction pure(String name) {
+        NativeFunction function = natives.get(name);
+        return function != null && function.pure ? function : null;
+    }
+
+    private static Map<String, NativeFunction> load() {
+        Map<String, NativeFunction> natives = new LinkedHashMap<>();
+        LoxNativeModule.Natives registry = new LoxNativeModule.Natives() {
+            @Override
+            public void define(String name, int arity, boolean pure, Function<List<Object>, Object> body) {
+                natives.put(name, new NativeFunction(arity, pure, (interpreter, arguments) -> {
+                    try {
+                        return value(body.apply(arguments));
+                    } catch (RuntimeException e) {
+                        throw error(e);
+                    }
+                }));
+            }
+
+            @Override
+            public void define(String name, boolean pure, UnaryOperator<Object> body) {
+                natives.put(name, new NativeFunction(1, pure, (interpreter, first, second, third) -> {
+                    try {
+                        return value(body.apply(first));
+                    } catch (RuntimeException e) {
+                        throw error(e);
+                    }
+                }));
+            }
+
+            @Override
+            public void define(String name, boolean pure, BinaryOperator<Object> body) {
+                natives.put(name, new NativeFunction(2, pure, (interpreter, first, second, third) -> {
+                    try {
+                        return value(body.apply(first, second));
+                    } catch (RuntimeException e) {
+                        throw error(e);
+                    }
+                }));
+            }
+        };
+        for (LoxNativeModule module : ServiceLoader.load(LoxNativeModule.class)) {
+            module.register(registry);
+        }
+        return natives;
+    }
+
+    private static Object value(Object value) {
+        return value instanceof Number number && !(value instanceof Double) ? (Object) number.doubleValue() : value;
+    }
+
+    private static RuntimeError error(RuntimeException e) {
+        return e instanceof RuntimeError error ? error : new RuntimeError(e.getMessage());
+    }
+}
@@ -0,0 +1,49 @@
+package jlox;
+
+import java.util.List;
+
+/**
+ * A Lox value implemented in Java, with methods that take at most three arguments. Method calls on native objects
+ * are run by the interpreter directly, without creating a bound method or an argument list. Looking up a method
+ * without calling it binds it as usual.
+ * <p>
+ * Like natives, methods report errors by throwing a {@link RuntimeError} without a token.
+ */
+interface NativeObject {
+    /**
+     * Returns the number of arguments the method takes, or -1 if there is no such method.
+     */
+    int arity(String method);
+
+    /**
+     * Calls a method with the given arguments. Arguments beyond the arity of the method are null.
+     */
+    Object invoke(String method, Object first, Object second, Object third);
+
+    default LoxCallable method(Token name) {
+        int arity = arity(name.lexeme);
+        if (arity < 0) {
+            throw new RuntimeError(name, String.format("Undefined property '%s'.", name.lexeme));
+        }
+
+        return new NativeFunction(arity, (interpreter, arguments) -> invoke(name.lexeme,
+                argument(arguments, 0), argument(arguments, 1), argument(arguments, 2)));
+    }
+
+    private static Object argument(List<Object> arguments, int index) {
+        return index < arguments.size() ? arguments.get(index) : null;
+    }
+
+    /**
+     * Appends a value the way print shows it.
+     */
+    static void append(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("nil");
+        } else if (value instanceof Double number) {
+            builder.append(NumberFormatter.toString(number));
+        } else {
+            builder.append(value);
+        }
+    }
+}
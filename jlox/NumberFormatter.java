@@ -0,0 +1,93 @@
+package jlox;
+
+/**
+ * Formats numbers the way Lox prints them: like {@link Double#toString(double)}, but without the ".0" suffix on
+ * integral values. Numbers are written into a caller supplied buffer, so the common cases allocate nothing.
+ * <p>
+ * Integral values and values with a short decimal expansion are formatted directly. Everything else, including all
+ * numbers printed in scientific notation, falls back on {@link Double#toString(double)}.
+ */
+final class NumberFormatter {
+    /**
+     * Longest output of {@link #format}, e.g. "-2.2250738585072014E-308".
+     */
+    static final int MAX_LENGTH = 24;
+
+    // Double.toString switches to scientific notation outside of [1e-3, 1e7).
+    private static final double MIN_FIXED = 1e-3;
+    private static final double MAX_FIXED = 1e7;
+    // Fraction digits tried by the fast path. Keeps scaled values well within the exact range of a double.
+    private static final int MAX_FRACTION_DIGITS = 8;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+
+    private NumberFormatter() {
+    }
+
+    /**
+     * Writes the number into the buffer, which must have room for {@link #MAX_LENGTH} characters, and returns the
+     * number of characters written.
+     */
+    static int format(double value, char[] buffer) {
+        double magnitude = Math.abs(value);
+
+        if (magnitude < MAX_FIXED && value == (long) value) {
+            int length = 0;
+            if (value < 0 || (value == 0 && 1 / value < 0)) {
+                buffer[length++] = '-';
+            }
+            return writeDigits((long) magnitude, buffer, length, 0);
+        }
+
+        if (magnitude >= MIN_FIXED && magnitude < MAX_FIXED) {
+            for (int fractionDigits = 1; fractionDigits <= MAX_FRACTION_DIGITS; fractionDigits++) {
+                double scale = POWERS_OF_TEN[fractionDigits];
+                double scaled = Math.rint(magnitude * scale);
+                // Both operands are exact, so the division is correctly rounded and matches parsing the digits back.
+                if (scaled / scale == magnitude) {
+                    int length = 0;
+                    if (value < 0) {
+                        buffer[length++] = '-';
+                    }
+                    return writeDecimal((long) scaled, fractionDigits, buffer, length);
+                }
+            }
+        }
+
+        String text = Double.toString(value);
+        text.getChars(0, text.length(), buffer, 0);
+        return text.length();
+    }
+
+    static String toString(double value) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, format(value, buffer));
+    }
+
+    private static int writeDecimal(long unscaled, int fractionDigits, char[] buffer, int offset) {
+        long scale = (long) POWERS_OF_TEN[fractionDigits];
+        offset = writeDigits(unscaled / scale, buffer, offset, 0);
+        buffer[offset++] = '.';
+
+        long fraction = unscaled % scale;
+        // Leading zeros of the fraction are kept, trailing ones can't exist since fewer digits didn't round-trip.
+        return writeDigits(fraction, buffer, offset, fractionDigits);
+    }
+
+    /**
+     * Writes the digits of a non-negative number, padded with leading zeros up to the given width.
+     */
+    private static int writeDigits(long number, char[] buffer, int offset, int width) {
+        int digits = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, width);
+
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return end;
+    }
+}
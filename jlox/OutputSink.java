@@ -0,0 +1,14 @@
+package jlox;
+
+/**
+ * Destination of the output of print statements. Sinks may buffer output until they are flushed.
+ */
+interface OutputSink {
+    void write(String text);
+
+    void write(double number);
+
+    void newLine();
+
+    void flush();
+}
@@ -0,0 +1,155 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Natives for data parallel processing of arrays on the common {@link ForkJoinPool}:
+ * <ul>
+ *     <li>{@code parallelMap(array, fn)} returns a new array with {@code fn} applied to every element.</li>
+ *     <li>{@code parallelReduce(array, fn, init)} combines {@code init} and all elements with
+ *     {@code fn(accumulator, element)}. Chunks of the array are reduced on their own, and their results are then
+ *     combined in order, starting from {@code init}, so {@code fn} must be associative. {@code init} is used exactly
+ *     once, and is the result for an empty array.</li>
+ * </ul>
+ * The array is split into chunks, and every chunk is processed in its own {@link Interpreter#fork() fork} of the
+ * calling interpreter, so functions passed in should not depend on running in any particular order.
+ */
+class Parallel {
+    // Chunks per worker thread, so that uneven chunks still keep all workers busy.
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private Parallel() {
+    }
+
+    static void define(Environment natives) {
+        natives.define("parallelMap", new NativeFunction(2, (interpreter, arguments) -> {
+            Object[] elements = array(arguments.get(0)).toArray();
+            LoxCallable function = function(arguments.get(1), 1);
+            Object[] results = new Object[elements.length];
+            ForkJoinPool.commonPool().invoke(
+                    new MapTask(interpreter, function, elements, results, 0, elements.length, chunk(elements)));
+            return new LoxArray(results);
+        }));
+        natives.define("parallelReduce", new NativeFunction(3, (interpreter, arguments) -> {
+            Object[] elements = array(arguments.get(0)).toArray();
+            LoxCallable function = function(arguments.get(1), 2);
+            Object accumulator = arguments.get(2);
+            if (elements.length == 0) {
+                return accumulator;
+            }
+
+            int chunk = chunk(elements);
+            Object[] results = new Object[(elements.length + chunk - 1) / chunk];
+            ForkJoinPool.commonPool().invoke(
+                    new ReduceTask(interpreter, function, elements, results, 0, results.length, chunk));
+            for (Object result : results) {
+                accumulator = function.call(interpreter, Arrays.asList(accumulator, result));
+            }
+            return accumulator;
+        }));
+    }
+
+    private static LoxArray array(Object object) {
+        if (object instanceof LoxArray array) {
+            return array;
+        }
+        throw new RuntimeError("Can only process arrays in parallel.");
+    }
+
+    private static LoxCallable function(Object object, int arity) {
+        if (object instanceof LoxCallable function && function.arity() == arity) {
+            return function;
+        }
+        throw new RuntimeError(String.format("Expected a function of %d parameters.", arity));
+    }
+
+    private static int chunk(Object[] elements) {
+        return Math.max(1, elements.length / (ForkJoinPool.commonPool().getParallelism() * CHUNKS_PER_THREAD));
+    }
+
+    private static class MapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final Object[] elements;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        MapTask(Interpreter interpreter, LoxCallable function, Object[] elements, Object[] results, int from, int to,
+                int chunk) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.elements = elements;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                Interpreter fork = interpreter.fork();
+                for (int i = from; i < to; i++) {
+                    results[i] = function.call(fork, List.of(elements[i]));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MapTask(interpreter, function, elements, results, from, middle, chunk),
+                    new MapTask(interpreter, function, elements, results, middle, to, chunk));
+        }
+    }
+
+    /**
+     * Reduces the chunks from {@code from} up to {@code to}, every one of them into its own slot of the results.
+     */
+    private static class ReduceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final Object[] elements;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        ReduceTask(Interpreter interpreter, LoxCallable function, Object[] elements, Object[] results, int from, int to,
+                   int chunk) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.elements = elements;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Interpreter fork = interpreter.fork();
+                int start = from * chunk;
+                int end = Math.min(elements.length, start + chunk);
+                Object accumulator = elements[start];
+                for (int i = start + 1; i < end; i++) {
+                    accumulator = function.call(fork, Arrays.asList(accumulator, elements[i]));
+                }
+                results[from] = accumulator;
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ReduceTask(interpreter, function, elements, results, from, middle, chunk),
+                    new ReduceTask(interpreter, function, elements, results, middle, to, chunk));
+        }
+    }
+}
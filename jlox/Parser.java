@@ -1,18 +1,32 @@
 package jlox;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 class Parser {
     private static class ParseError extends RuntimeException {
     }
 
+    private static final Object NOT_CONSTANT = new Object();
+
     private final List<Token> tokens;
+    // What the paths of imported modules are relative to.
+    private final Path directory;
+    private final ErrorReporter reporter;
+    private final List<Path> imports = new ArrayList<>();
     private int curr = 0;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter reporter) {
+        this(tokens, Paths.get(""), reporter);
+    }
+
+    Parser(List<Token> tokens, Path directory, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.directory = directory;
+        this.reporter = reporter;
     }
 
     List<Stmt> parse() {
@@ -24,6 +38,13 @@ class Parser {
         return statements;
     }
 
+    /**
+     * Returns the paths of all modules the parsed source imports, in order.
+     */
+    List<Path> imports() {
+        return imports;
+    }
+
     private Expr expression() {
         return assigment();
     }
@@ -39,6 +60,9 @@ class Parser {
             if (match(TokenType.VAR)) {
                 return varDeclaration();
             }
+            if (match(TokenType.IMPORT)) {
+                return importDeclaration();
+            }
             return statement();
         } catch (ParseError error) {
             synchronize();
@@ -63,7 +87,7 @@ class Parser {
         }
 
         consume(TokenType.RIGHT_BRACE, "Expect '}' after class body.");
-        return new Stmt.Class(name, superclass, methods);
+        return at(name.line, new Stmt.Class(name, superclass, methods));
     }
 
     private Stmt statement() {
@@ -88,13 +112,15 @@ class Parser {
         }
 
         if (match(TokenType.LEFT_BRACE)) {
-            return new Stmt.Block(block());
+            int line = previous().line;
+            return at(line, new Stmt.Block(block()));
         }
 
         return expressionStatement();
     }
 
     private Stmt forStatement() {
+        int line = previous().line;
         consume(TokenType.LEFT_PAREN, "Expected '(' after 'for'.");
 
         Stmt initializer;
@@ -119,21 +145,11 @@ class Parser {
         consume(TokenType.RIGHT_PAREN, "Expected ')' after for-loop clauses.");
 
         Stmt body = statement();
-        if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
-        }
-        if (condition == null) {
-            condition = new Expr.Literal(true);
-        }
-        body = new Stmt.While(condition, body);
-        if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
-        }
-
-        return body;
+        return at(line, new Stmt.For(initializer, condition, increment, body));
     }
 
     private Stmt ifStatement() {
+        int line = previous().line;
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'if'.");
         Expr condition = expression();
         consume(TokenType.RIGHT_PAREN, "Expect ')' after if condition.");
@@ -144,7 +160,7 @@ class Parser {
             elseBranch = statement();
         }
 
-        return new Stmt.If(condition, thenBranch, elseBranch);
+        return at(line, new Stmt.If(condition, thenBranch, elseBranch));
     }
 
     private Stmt returnStatement() {
@@ -155,22 +171,24 @@ class Parser {
         }
 
         consume(TokenType.SEMICOLON, "Expect ';' after return value.");
-        return new Stmt.Return(keyword, value);
+        return at(keyword.line, new Stmt.Return(keyword, value));
     }
 
     private Stmt whileStatement() {
+        int line = previous().line;
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(TokenType.RIGHT_PAREN, "Expect ')' after while condition.");
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return at(line, new Stmt.While(condition, body));
     }
 
     private Stmt printStatement() {
+        int line = previous().line;
         Expr value = expression();
         consume(TokenType.SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
+        return at(line, new Stmt.Print(value));
     }
 
     private Stmt varDeclaration() {
@@ -182,13 +200,45 @@ class Parser {
         }
 
         consume(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
-        return new Stmt.Var(name, initializer);
+        return at(name.line, new Stmt.Var(name, initializer));
+    }
+
+    private Stmt importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(TokenType.STRING, "Expect module path after 'import'.");
+
+        Path module;
+        try {
+            module = directory.resolve((String) path.literal).normalize();
+        } catch (InvalidPathException e) {
+            throw error(path, "Invalid module path.");
+        }
+
+        Token name;
+        // 'as' is only a keyword here, so it's still a valid variable name everywhere else.
+        if (isCurrType(TokenType.IDENTIFIER) && peek().lexeme.equals("as")) {
+            next();
+            name = consume(TokenType.IDENTIFIER, "Expect module name after 'as'.");
+        } else {
+            // Without a name, the module is named after its file.
+            Path file = module.getFileName();
+            String fileName = file == null ? "" : file.toString().replaceFirst("\\.lox$", "");
+            if (!Lexer.isIdentifier(fileName)) {
+                throw error(path, "Expect 'as' and a module name for this path.");
+            }
+            name = new Token(TokenType.IDENTIFIER, fileName, null, path.line);
+        }
+
+        consume(TokenType.SEMICOLON, "Expect ';' after import.");
+        imports.add(module);
+        return at(keyword.line, new Stmt.Import(keyword, module, name));
     }
 
     private Stmt expressionStatement() {
+        int line = peek().line;
         Expr expr = expression();
         consume(TokenType.SEMICOLON, "Expect ';' after expression.");
-        return new Stmt.Expression(expr);
+        return at(line, new Stmt.Expression(expr));
     }
 
     private Stmt.Function function(String kind) {
@@ -208,7 +258,12 @@ class Parser {
 
         consume(TokenType.LEFT_BRACE, "Expected '{' before " + kind + " body.");
         List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        return at(name.line, new Stmt.Function(name, parameters, body));
+    }
+
+    private static <T extends Stmt> T at(int line, T stmt) {
+        stmt.line = line;
+        return stmt;
     }
 
     private List<Stmt> block() {
@@ -352,7 +407,52 @@ class Parser {
 
         Token paren = consume(TokenType.RIGHT_PAREN, "Expected ')' after function arguments");
 
-        return new Expr.Call(callee, paren, arguments);
+        return fold(new Expr.Call(callee, paren, arguments));
+    }
+
+    /**
+     * Runs a call of a pure native with constant arguments right away, see {@link Expr.Folded}. Calls that fail are
+     * left to fail when they run.
+     */
+    private static Expr fold(Expr.Call call) {
+        if (!(call.callee instanceof Expr.Variable variable)) {
+            return call;
+        }
+        NativeFunction function = NativeModules.pure(variable.name.lexeme);
+        if (function == null || function.arity() != call.arguments.size()) {
+            return call;
+        }
+
+        List<Object> arguments = new ArrayList<>();
+        for (Expr argument : call.arguments) {
+            Object value = constant(argument);
+            if (value == NOT_CONSTANT) {
+                return call;
+            }
+            arguments.add(value);
+        }
+        try {
+            return new Expr.Folded(call, function, function.call(null, arguments));
+        } catch (RuntimeError error) {
+            return call;
+        }
+    }
+
+    /**
+     * Returns the value of a literal, possibly negated or in parentheses, or NOT_CONSTANT for other expressions.
+     */
+    private static Object constant(Expr expr) {
+        if (expr instanceof Expr.Literal literal) {
+            return literal.value;
+        }
+        if (expr instanceof Expr.Grouping grouping) {
+            return constant(grouping.expression);
+        }
+        if (expr instanceof Expr.Unary unary && unary.operator.type == TokenType.MINUS
+                && constant(unary.right) instanceof Double number) {
+            return -number;
+        }
+        return NOT_CONSTANT;
     }
 
     private Expr primary() {
@@ -397,7 +497,7 @@ class Parser {
     }
 
     private ParseError error(Token token, String msg) {
-        Jlox.error(token, msg);
+        reporter.error(token, msg);
         return new ParseError();
     }
 
@@ -410,7 +510,7 @@ class Parser {
             }
 
             switch (peek().type) {
-                case CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN -> {
+                case CLASS, FUN, VAR, IMPORT, FOR, IF, WHILE, PRINT, RETURN -> {
                     return;
                 }
             }
@@ -0,0 +1,168 @@
+package jlox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sampling profiler for Lox code. A background thread takes a snapshot of the interpreter's {@link CallStack} at a
+ * fixed interval, and counts how often every stack was seen.
+ * <p>
+ * The samples can be written as collapsed stacks, one line per distinct stack with its frames separated by
+ * semicolons followed by its sample count, which is what flame graph tools expect. Functions are named by their name
+ * and the line they are declared on, top-level code is {@code <script>}.
+ * <p>
+ * Self and total time are also counted by function and the line it was at. Lines are kept up to date by wrapper
+ * statements in an {@link Instrumenter instrumented} copy of the program, so only programs being profiled pay for
+ * them. In other programs every sample is attributed to the line the function is declared on.
+ */
+class Profiler {
+    private static final long INTERVAL_MILLIS = 1;
+    private static final String SCRIPT = "<script>";
+
+    private record Site(String function, int line) {
+    }
+
+    private final CallStack stack;
+    private final Map<String, Long> stacks = new HashMap<>();
+    private final Map<Site, Long> self = new HashMap<>();
+    private final Map<Site, Long> total = new HashMap<>();
+    private long samples = 0;
+    private volatile boolean running = false;
+    private Thread sampler;
+
+    Profiler(CallStack stack) {
+        this.stack = stack;
+    }
+
+    Program instrument(Program program) {
+        return new Instrumenter(LineMarker::new).instrument(program);
+    }
+
+    void start() {
+        running = true;
+        sampler = new Thread(() -> {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        sampler.join();
+    }
+
+    private void sample() {
+        Stmt.Function[] functions = stack.snapshot();
+        int[] lines = stack.lines();
+        StringBuilder key = new StringBuilder(SCRIPT);
+        Site leaf = new Site(SCRIPT, line(lines, 0));
+        Set<Site> seen = new HashSet<>();
+        seen.add(leaf);
+
+        for (int i = 0; i < functions.length; i++) {
+            // The stack may have changed under our feet while it was copied.
+            if (functions[i] == null) {
+                continue;
+            }
+            String name = name(functions[i]);
+            key.append(';').append(name);
+            leaf = new Site(name, line(lines, i + 1));
+            seen.add(leaf);
+        }
+
+        samples++;
+        stacks.merge(key.toString(), 1L, Long::sum);
+        self.merge(leaf, 1L, Long::sum);
+        // Recursive functions only count once towards the total of a line in a sample.
+        for (Site site : seen) {
+            total.merge(site, 1L, Long::sum);
+        }
+    }
+
+    void writeCollapsed(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+                writer.write(entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Prints the lines of functions with the most self time, along with their total time.
+     */
+    void report(PrintStream out, int top) {
+        List<Map.Entry<Site, Long>> sites = new ArrayList<>(total.entrySet());
+        sites.sort((a, b) -> {
+            int bySelf = Long.compare(self.getOrDefault(b.getKey(), 0L), self.getOrDefault(a.getKey(), 0L));
+            return bySelf != 0 ? bySelf : Long.compare(b.getValue(), a.getValue());
+        });
+
+        out.printf("%d samples, every %d ms%n", samples, INTERVAL_MILLIS);
+        out.printf("%7s %7s %6s  %s%n", "Self", "Total", "Line", "Function");
+        for (Map.Entry<Site, Long> site : sites.subList(0, Math.min(top, sites.size()))) {
+            out.printf("%6.1f%% %6.1f%% %6d  %s%n",
+                    percentage(self.getOrDefault(site.getKey(), 0L)),
+                    percentage(site.getValue()),
+                    site.getKey().line(),
+                    site.getKey().function());
+        }
+    }
+
+    private static int line(int[] lines, int frame) {
+        return frame < lines.length ? lines[frame] : 0;
+    }
+
+    private double percentage(long count) {
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+
+    private static String name(Stmt.Function function) {
+        return function.name.lexeme + ":" + function.name.line;
+    }
+
+    /**
+     * Makes the line of the statement it wraps the current line of the interpreter running it, while it runs.
+     */
+    private static class LineMarker extends Stmt {
+        final Stmt statement;
+
+        LineMarker(Stmt statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            if (!(visitor instanceof Interpreter interpreter)) {
+                return statement.accept(visitor);
+            }
+
+            // Tasks run the same statements in interpreters of their own, with stacks of their own.
+            CallStack stack = interpreter.callStack;
+            int previous = stack.line();
+            stack.line(line);
+            try {
+                return statement.accept(visitor);
+            } finally {
+                stack.line(previous);
+            }
+        }
+    }
+}
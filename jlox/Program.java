@@ -0,0 +1,80 @@
+package jlox;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * A lexed, parsed and resolved Lox program. A program never changes once compiled, so the same instance can be
+ * handed to any number of fresh interpreters.
+ */
+class Program {
+    final List<Stmt> statements;
+    // Size of the frame for the variables of the blocks in the top-level code.
+    final int frameSize;
+    // Paths of the modules the program imports.
+    final List<Path> imports;
+
+    private Program(List<Stmt> statements, int frameSize, List<Path> imports) {
+        this.statements = statements;
+        this.frameSize = frameSize;
+        this.imports = imports;
+    }
+
+    /**
+     * Returns the same program with its statements replaced, e.g. by instrumented copies of them. The resolver
+     * stores its results in the syntax tree, so copies must keep those of the original statements.
+     */
+    Program withStatements(List<Stmt> statements) {
+        return new Program(statements, frameSize, imports);
+    }
+
+    /**
+     * Runs the front end over the given source. Errors are reported to the given reporter, in which case no program
+     * is returned. Imports are relative to the working directory.
+     */
+    static Program compile(String source, ErrorReporter reporter) {
+        return compile(source, null, reporter);
+    }
+
+    /**
+     * Runs the front end over the source of the given file, whose imports are relative to the file's directory. The
+     * file may be null for sources that don't come from a file.
+     * <p>
+     * All modules the program imports, directly or not, are compiled along with it, in parallel. Their errors are
+     * reported too, after the program's own. Modules that can't be read are only an error once they're used.
+     */
+    static Program compile(String source, Path file, ErrorReporter reporter) {
+        Program program = compileFile(source, file, reporter);
+        if (program == null) {
+            return null;
+        }
+
+        ModuleCache.compileAll(program.imports, reporter);
+        return reporter.hadError ? null : program;
+    }
+
+    /**
+     * Runs the front end over the source of a single file, ignoring its imports.
+     */
+    static Program compileFile(String source, Path file, ErrorReporter reporter) {
+        Path directory = file == null || file.getParent() == null ? Paths.get("") : file.getParent();
+        Lexer lexer = new Lexer(source, reporter);
+        List<Token> tokens = lexer.lexTokens();
+        Parser parser = new Parser(tokens, directory, reporter);
+        List<Stmt> statements = parser.parse();
+
+        if (reporter.hadError) {
+            return null;
+        }
+
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+
+        if (reporter.hadError) {
+            return null;
+        }
+
+        return new Program(statements, resolver.frameSize(), parser.imports());
+    }
+}
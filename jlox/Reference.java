@@ -0,0 +1,16 @@
+package jlox;
+
+/**
+ * Where an expression finds the local variable it refers to: in the variable's slot of the current frame, or in the
+ * given upvalue of the running function. Expressions referring to globals have no reference.
+ */
+class Reference {
+    final Local local;
+    // -1 for variables in the current frame.
+    final int upvalue;
+
+    Reference(Local local, int upvalue) {
+        this.local = local;
+        this.upvalue = upvalue;
+    }
+}
@@ -1,18 +1,55 @@
 package jlox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
+/**
+ * Resolves every variable to where it's found at runtime, and stores the result in the syntax tree. Functions are
+ * closure converted: each function gets a flat list of the variables it captures from enclosing functions, its
+ * upvalues, instead of holding on to the frames it was created in.
+ * <p>
+ * The local variables of a function, including those declared in nested blocks, get slots in a single frame per
+ * call, so blocks cost nothing at runtime. Blocks that are done with their variables hand their slots on to later
+ * blocks.
+ */
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final ErrorReporter reporter;
+    private final Stack<Map<String, Local>> scopes = new Stack<>();
+    // The function whose body is being resolved, which is the top-level code outside of any functions.
+    private FunctionScope function = new FunctionScope(null, 0);
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    public Resolver(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * Returns the size of the frame that the top-level code of the resolved statements needs, for the variables of
+     * its blocks.
+     */
+    int frameSize() {
+        return function.frameSize;
+    }
+
+    private static class FunctionScope {
+        final FunctionScope enclosing;
+        // Index of the function's outermost scope.
+        final int depth;
+        // The variables the function captures, by upvalue, and where it finds them when it's created.
+        final List<Local> upvalues = new ArrayList<>();
+        final List<Reference> captures = new ArrayList<>();
+        // Slots in use, and the most ever used.
+        int slots = 0;
+        int frameSize = 0;
+
+        FunctionScope(FunctionScope enclosing, int depth) {
+            this.enclosing = enclosing;
+            this.depth = depth;
+        }
     }
 
     private enum FunctionType {
@@ -41,11 +78,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
-        declare(stmt.name);
-        define(stmt.name);
+        stmt.local = declare(stmt.name, false);
+        define(stmt.local);
 
         if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-            Jlox.error(stmt.superclass.name, "A class can't inherit from itself.");
+            reporter.error(stmt.superclass.name, "A class can't inherit from itself.");
         }
 
         if (stmt.superclass != null) {
@@ -55,12 +92,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if (stmt.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            stmt.superLocal = declareImplicit("super");
         }
 
-        beginScope();
-        scopes.peek().put("this", true);
-
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
@@ -69,8 +103,6 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             resolveFunction(method, declaration);
         }
 
-        endScope();
-
         if (stmt.superclass != null) {
             endScope();
         }
@@ -85,10 +117,83 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        beginScope();
+        if (stmt.initializer != null) {
+            resolve(stmt.initializer);
+        }
+        if (stmt.condition != null) {
+            resolve(stmt.condition);
+        }
+        if (stmt.increment != null) {
+            resolve(stmt.increment);
+        }
+
+        Local counter = counter(stmt);
+        int reads = counter == null ? 0 : counter.reads;
+        int assignments = counter == null ? 0 : counter.assignments;
+        resolve(stmt.body);
+        endScope();
+
+        // The body may read the counter, but not change or capture it.
+        if (counter != null && counter.assignments == assignments && !counter.captured) {
+            Expr.Binary increment = (Expr.Binary) ((Expr.Assign) stmt.increment).value;
+            double step = (Double) ((Expr.Literal) increment.right).value;
+            stmt.counter = counter;
+            stmt.step = increment.operator.type == TokenType.PLUS ? step : -step;
+            stmt.counterRead = counter.reads > reads;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the variable of a loop that looks like it counts: one that declares a variable, compares it with a
+     * number or another variable, and adds a number to it or subtracts one. Returns null for other loops.
+     */
+    private static Local counter(Stmt.For stmt) {
+        if (!(stmt.initializer instanceof Stmt.Var initializer) || initializer.local == null) {
+            return null;
+        }
+        Local local = initializer.local;
+
+        if (!(stmt.condition instanceof Expr.Binary condition) || !refersTo(condition.left, local)) {
+            return null;
+        }
+        switch (condition.operator.type) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {
+            }
+            default -> {
+                return null;
+            }
+        }
+        boolean numberLimit = condition.right instanceof Expr.Literal limit && limit.value instanceof Double;
+        boolean variableLimit = condition.right instanceof Expr.Variable && !refersTo(condition.right, local);
+        if (!numberLimit && !variableLimit) {
+            return null;
+        }
+
+        if (!(stmt.increment instanceof Expr.Assign increment) || increment.reference == null
+                || increment.reference.local != local) {
+            return null;
+        }
+        if (!(increment.value instanceof Expr.Binary step) || !refersTo(step.left, local)
+                || !(step.operator.type == TokenType.PLUS || step.operator.type == TokenType.MINUS)
+                || !(step.right instanceof Expr.Literal amount && amount.value instanceof Double)) {
+            return null;
+        }
+        return local;
+    }
+
+    private static boolean refersTo(Expr expr, Local local) {
+        return expr instanceof Expr.Variable variable && variable.reference != null
+                && variable.reference.local == local;
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        declare(stmt.name);
-        define(stmt.name);
+        stmt.local = declare(stmt.name, false);
+        define(stmt.local);
 
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
@@ -113,12 +218,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE) {
-            Jlox.error(stmt.keyword, "Can't return from top-level code.");
+            reporter.error(stmt.keyword, "Can't return from top-level code.");
         }
 
         if (stmt.value != null) {
             if (currentFunction == FunctionType.INITIALIZER) {
-                Jlox.error(stmt.keyword, "Can't return a value from an initializer.");
+                reporter.error(stmt.keyword, "Can't return a value from an initializer.");
             }
 
             resolve(stmt.value);
@@ -127,13 +232,20 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        stmt.local = declare(stmt.name, true);
+        define(stmt.local);
+        return null;
+    }
+
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
+        stmt.local = declare(stmt.name, true);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
-        define(stmt.name);
+        define(stmt.local);
         return null;
     }
 
@@ -147,7 +259,10 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        expr.reference = resolveLocal(expr.name.lexeme);
+        if (expr.reference != null) {
+            expr.reference.local.assignments++;
+        }
         return null;
     }
 
@@ -169,6 +284,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitFoldedExpr(Expr.Folded expr) {
+        resolve(expr.call);
+        return null;
+    }
+
     @Override
     public Void visitGetExpr(Expr.Get expr) {
         resolve(expr.object);
@@ -203,22 +324,23 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
         if (currentClass == ClassType.NONE) {
-            Jlox.error(expr.keyword, "Can't use 'super' outside of a class.");
+            reporter.error(expr.keyword, "Can't use 'super' outside of a class.");
         } else if (currentClass != ClassType.SUBCLASS) {
-            Jlox.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
+            reporter.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
         }
-        resolveLocal(expr, expr.keyword);
+        expr.reference = resolveLocal("super");
+        expr.receiver = resolveLocal("this");
         return null;
     }
 
     @Override
     public Void visitThisExpr(Expr.This expr) {
-        if (currentClass != ClassType.CLASS) {
-            Jlox.error(expr.keyword, "Can't use 'this' outside of a class.");
+        if (currentClass == ClassType.NONE) {
+            reporter.error(expr.keyword, "Can't use 'this' outside of a class.");
             return null;
         }
 
-        resolveLocal(expr, expr.keyword);
+        expr.reference = resolveLocal("this");
         return null;
     }
 
@@ -230,11 +352,17 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-            Jlox.error(expr.name, "Can't read local variable in its own initializer.");
+        if (!scopes.isEmpty()) {
+            Local local = scopes.peek().get(expr.name.lexeme);
+            if (local != null && !local.defined) {
+                reporter.error(expr.name, "Can't read local variable in its own initializer.");
+            }
         }
 
-        resolveLocal(expr, expr.name);
+        expr.reference = resolveLocal(expr.name.lexeme);
+        if (expr.reference != null) {
+            expr.reference.local.reads++;
+        }
         return null;
     }
 
@@ -257,51 +385,104 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void endScope() {
-        scopes.pop();
+        Map<String, Local> scope = scopes.pop();
+        for (Local local : scope.values()) {
+            local.close();
+        }
+        function.slots -= scope.size();
     }
 
-    private void declare(Token name) {
+    /**
+     * Declares a local variable in the innermost scope. Returns null for globals, which are looked up by name.
+     */
+    private Local declare(Token name, boolean copyable) {
         if (scopes.isEmpty()) {
-            return;
+            return null;
         }
-        Map<String, Boolean> scope = scopes.peek();
+        Map<String, Local> scope = scopes.peek();
 
         if (scope.containsKey(name.lexeme)) {
-            Jlox.error(name, "Already a variable with this name in this scope.");
+            reporter.error(name, "Already a variable with this name in this scope.");
         }
 
-        scope.put(name.lexeme, false);
+        Local local = new Local(name.lexeme, allocateSlot(), copyable);
+        scope.put(name.lexeme, local);
+        return local;
     }
 
-    private void define(Token name) {
-        if (scopes.isEmpty()) {
-            return;
+    private void define(Local local) {
+        if (local != null) {
+            local.defined = true;
         }
+    }
+
+    /**
+     * Declares a variable that's not written in the source, like 'this'.
+     */
+    private Local declareImplicit(String name) {
+        Local local = new Local(name, allocateSlot(), true);
+        local.defined = true;
+        scopes.peek().put(name, local);
+        return local;
+    }
 
-        scopes.peek().put(name.lexeme, true);
+    private int allocateSlot() {
+        int slot = function.slots++;
+        function.frameSize = Math.max(function.frameSize, function.slots);
+        return slot;
     }
 
-    private void resolveLocal(Expr expr, Token name) {
+    private Reference resolveLocal(String name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
+            Local local = scopes.get(i).get(name);
+            if (local != null) {
+                return reference(local, i, function);
             }
         }
+        return null;
     }
 
-    private void resolveFunction(Stmt.Function function, FunctionType type) {
+    /**
+     * Returns the reference to a local declared in the given scope, from code in the given function.
+     */
+    private Reference reference(Local local, int scope, FunctionScope function) {
+        if (scope >= function.depth) {
+            return new Reference(local, -1);
+        }
+        return new Reference(local, upvalue(function, local, scope));
+    }
+
+    private int upvalue(FunctionScope function, Local local, int scope) {
+        int upvalue = function.upvalues.indexOf(local);
+        if (upvalue < 0) {
+            local.captured = true;
+            function.captures.add(reference(local, scope, function.enclosing));
+            function.upvalues.add(local);
+            upvalue = function.upvalues.size() - 1;
+        }
+        return upvalue;
+    }
+
+    private void resolveFunction(Stmt.Function stmt, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
 
         beginScope();
-        for (Token param : function.params) {
-            declare(param);
-            define(param);
+        function = new FunctionScope(function, scopes.size() - 1);
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            declareImplicit("this");
         }
-        resolve(function.body);
+        stmt.parameters = new Local[stmt.params.size()];
+        for (int i = 0; i < stmt.params.size(); i++) {
+            stmt.parameters[i] = declare(stmt.params.get(i), true);
+            define(stmt.parameters[i]);
+        }
+        resolve(stmt.body);
         endScope();
 
+        stmt.captures = function.captures.toArray(new Reference[0]);
+        stmt.frameSize = function.frameSize;
+        function = function.enclosing;
         currentFunction = enclosingFunction;
     }
 }
\ No newline at end of file
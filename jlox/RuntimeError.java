@@ -1,10 +1,34 @@
 package jlox;
 
+import java.nio.file.Path;
+
 class RuntimeError extends RuntimeException {
     final Token token;
+    // The module the error happened in, null for the main program. Set by the innermost call or module the error
+    // leaves, since only that one knows which file the token is from.
+    Path module;
+    private boolean located = false;
 
     public RuntimeError(Token token, String msg) {
         super(msg);
         this.token = token;
     }
+
+    /**
+     * Creates an error for native code, which doesn't know where it was called from. The interpreter adds the token
+     * of the call.
+     */
+    public RuntimeError(String msg) {
+        this(null, msg);
+    }
+
+    /**
+     * Records the module the code that threw the error is from, unless the error was already located.
+     */
+    void locate(Path module) {
+        if (!located) {
+            this.module = module;
+            located = true;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Thin client for {@link ScriptServer}. Sends a script to the server and replays its output and exit code.
+ */
+class ScriptClient {
+    static int run(Path socket, Path script) throws IOException {
+        byte[] path = script.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        byte[] source = Files.readAllBytes(script);
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeByte(ScriptServer.PATH);
+            out.writeInt(path.length);
+            out.write(path);
+            out.writeByte(ScriptServer.SOURCE);
+            out.writeInt(source.length);
+            out.write(source);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            for (;;) {
+                byte type = in.readByte();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+
+                switch (type) {
+                    case ScriptServer.STDOUT -> write(System.out, payload);
+                    case ScriptServer.STDERR -> write(System.err, payload);
+                    case ScriptServer.EXIT -> {
+                        System.out.flush();
+                        System.err.flush();
+                        return ByteBuffer.wrap(payload).getInt();
+                    }
+                    default -> throw new IOException("Unknown frame type " + type + ".");
+                }
+            }
+        }
+    }
+
+    private static void write(PrintStream stream, byte[] payload) {
+        stream.write(payload, 0, payload.length);
+    }
+}
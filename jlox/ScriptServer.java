@@ -0,0 +1,180 @@
+package jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident script server. Keeps one warmed up JVM around and runs scripts sent to it over a Unix domain socket, so
+ * clients don't pay for JVM startup and JIT warm-up on every run.
+ * <p>
+ * A request is a path frame holding the absolute path of the script, which its imports are resolved against,
+ * followed by a frame holding the script source. The server answers with a stream of stdout and stderr
+ * frames, followed by an exit frame carrying the same exit code {@code jlox <script>} would have exited with.
+ * Every frame is a type byte, followed by the payload length and the payload itself.
+ * <p>
+ * Clients are served concurrently, each script running in its own {@link Isolate}.
+ */
+class ScriptServer {
+    static final byte PATH = 'P';
+    static final byte SOURCE = 'S';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    private static final int CACHE_SIZE = 256;
+
+    private final Path socket;
+    private final Map<String, Program> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    ScriptServer(Path socket) {
+        this.socket = socket;
+    }
+
+    void serve() throws IOException {
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            System.err.printf("Listening on %s%n", socket);
+
+            for (;;) {
+                SocketChannel client = server.accept();
+                workers.execute(() -> serve(client));
+            }
+        } finally {
+            workers.shutdownNow();
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (client) {
+            handle(client);
+        } catch (IOException e) {
+            System.err.printf("Dropped client: %s%n", e.getMessage());
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+        Path path = Path.of(new String(read(in, PATH), StandardCharsets.UTF_8));
+        byte[] source = read(in, SOURCE);
+
+        BufferedSink scriptOut = new BufferedSink(new FrameOutputStream(out, STDOUT), false);
+        PrintStream scriptErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDERR)));
+        int status;
+        try (Isolate isolate = new Isolate(scriptOut, scriptErr)) {
+            status = run(isolate, path, source);
+        } finally {
+            scriptOut.flush();
+            scriptErr.flush();
+        }
+
+        out.writeByte(EXIT);
+        out.writeInt(4);
+        out.writeInt(status);
+        out.flush();
+    }
+
+    private static byte[] read(DataInputStream in, byte type) throws IOException {
+        if (in.readByte() != type) {
+            throw new IOException(String.format("Expected a '%c' frame.", (char) type));
+        }
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Compiles and runs the script. Compiled programs are cached by path and source, since the same source imports
+     * different modules in different directories.
+     */
+    private int run(Isolate isolate, Path path, byte[] source) {
+        String key = path + "\0" + hash(source);
+        Program program = cache.get(key);
+        if (program == null) {
+            program = isolate.compile(new String(source, Charset.defaultCharset()), path);
+            if (program == null) {
+                return Isolate.EXIT_COMPILE_ERROR;
+            }
+            cache.put(key, program);
+        }
+
+        return isolate.run(program);
+    }
+
+    private static String hash(byte[] source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wraps everything written to it into frames of one type. The stdout and stderr streams of a script share the
+     * same connection, so frames are written atomically.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(bytes, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package jlox;
 
+import java.nio.file.Path;
 import java.util.List;
 
 abstract class Stmt {
+    // Line the statement starts on, set by the parser.
+    int line;
 
     abstract <R> R accept(Visitor<R> visitor);
 
@@ -10,8 +13,10 @@ abstract class Stmt {
         R visitBlockStmt(Block stmt);
         R visitClassStmt(Class stmt);
         R visitExpressionStmt(Expression stmt);
+        R visitForStmt(For stmt);
         R visitFunctionStmt(Function stmt);
         R visitIfStmt(If stmt);
+        R visitImportStmt(Import stmt);
         R visitPrintStmt(Print stmt);
         R visitReturnStmt(Return stmt);
         R visitVarStmt(Var stmt);
@@ -46,6 +51,9 @@ abstract class Stmt {
         final Token name;
         final Expr.Variable superclass;
         final List<Stmt.Function> methods;
+        // Set by the resolver, null for globals, and the variable 'super' of the methods, if there's a superclass.
+        Local local;
+        Local superLocal;
     }
 
     static class Expression extends Stmt {
@@ -61,6 +69,30 @@ abstract class Stmt {
         final Expr expression;
     }
 
+    static class For extends Stmt {
+        For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+            this.initializer = initializer;
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForStmt(this);
+        }
+
+        final Stmt initializer;
+        final Expr condition;
+        final Expr increment;
+        final Stmt body;
+        // Set by the resolver for counted loops, see Interpreter#visitForStmt: the loop variable, what it's
+        // incremented by, and whether the body reads it.
+        Local counter;
+        double step;
+        boolean counterRead;
+    }
+
     static class Function extends Stmt {
         Function(Token name, List<Token> params, List<Stmt> body) {
             this.name = name;
@@ -76,6 +108,12 @@ abstract class Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+        // Set by the resolver: the function's own variable, null for globals and methods, its parameters, where the
+        // values of its upvalues are found when the function is created, and the size of its frames.
+        Local local;
+        Local[] parameters;
+        Reference[] captures;
+        int frameSize;
     }
 
     static class If extends Stmt {
@@ -95,6 +133,25 @@ abstract class Stmt {
         final Stmt elseBranch;
     }
 
+    static class Import extends Stmt {
+        Import(Token keyword, Path path, Token name) {
+            this.keyword = keyword;
+            this.path = path;
+            this.name = name;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final Path path;
+        final Token name;
+        // Set by the resolver, null for globals.
+        Local local;
+    }
+
     static class Print extends Stmt {
         Print(Expr expression) {
             this.expression = expression;
@@ -136,6 +193,8 @@ abstract class Stmt {
 
         final Token name;
         final Expr initializer;
+        // Set by the resolver, null for globals.
+        Local local;
     }
 
     static class While extends Stmt {
@@ -0,0 +1,138 @@
+package jlox;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Natives for running Lox functions concurrently:
+ * <ul>
+ *     <li>{@code spawn(fn)} calls a function without parameters on another thread, and returns a task for it.</li>
+ *     <li>{@code join(task)} waits for a task, and returns what its function returned. Runtime errors of the task
+ *     are raised again by join.</li>
+ *     <li>{@code Channel(capacity)} creates a buffered channel, which {@code send(channel, value)} blocks on while it
+ *     is full, and {@code receive(channel)} blocks on while it is empty.</li>
+ * </ul>
+ * Tasks run on virtual threads when the JVM has them, so thousands of them are cheap. Older JVMs fall back on a pool
+ * of platform threads. Each task runs in a {@link Interpreter#fork() fork} of the interpreter that spawned it.
+ */
+class Tasks {
+    private static final ExecutorService executor = newExecutor();
+
+    private Tasks() {
+    }
+
+    static void define(Environment natives) {
+        natives.define("spawn", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxCallable function) || function.arity() != 0) {
+                throw new RuntimeError("Can only spawn functions without parameters.");
+            }
+            Interpreter fork = interpreter.fork();
+            return new Task(CompletableFuture.supplyAsync(() -> function.call(fork, List.of()), executor));
+        }));
+        natives.define("join", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Task task)) {
+                throw new RuntimeError("Can only join tasks.");
+            }
+            return task.join();
+        }));
+        natives.define("Channel", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Double capacity) || capacity < 1 || capacity != Math.floor(capacity)) {
+                throw new RuntimeError("Channel capacity must be a positive integer.");
+            }
+            return new Channel(capacity.intValue());
+        }));
+        natives.define("send", new NativeFunction(2, (interpreter, arguments) -> {
+            channel(arguments.get(0)).send(arguments.get(1));
+            return null;
+        }));
+        natives.define("receive", new NativeFunction(1, (interpreter, arguments) ->
+                channel(arguments.get(0)).receive()));
+    }
+
+    private static Channel channel(Object object) {
+        if (object instanceof Channel channel) {
+            return channel;
+        }
+        throw new RuntimeError("Can only send to and receive from channels.");
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // Virtual threads are final in Java 21, while we still build for 17.
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "lox-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static class Task {
+        private final CompletableFuture<Object> future;
+
+        Task(CompletableFuture<Object> future) {
+            this.future = future;
+        }
+
+        Object join() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<task>";
+        }
+    }
+
+    private static class Channel {
+        // Queues can't hold null, so nil is sent as a sentinel.
+        private static final Object NIL = new Object();
+
+        private final BlockingQueue<Object> queue;
+
+        Channel(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void send(Object value) {
+            try {
+                queue.put(value == null ? NIL : value);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError("Interrupted while sending.");
+            }
+        }
+
+        Object receive() {
+            try {
+                Object value = queue.take();
+                return value == NIL ? null : value;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError("Interrupted while receiving.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<channel>";
+        }
+    }
+}
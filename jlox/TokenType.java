@@ -4,7 +4,7 @@ enum TokenType {
     // Literals
     IDENTIFIER, STRING, NUMBER,
     // Keywords
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR, PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, IMPORT, NIL, OR, PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
     // Single-character tokens
     SEMICOLON, COMMA, DOT, SLASH, STAR, MINUS, PLUS,
     LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
@@ -0,0 +1,62 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Output sink writing to a character stream, e.g. the writer of a script engine context. Any buffering is left to
+ * the writer. Like {@link BufferedSink}, output is dropped once writing has failed.
+ */
+class WriterSink implements OutputSink {
+    private final Writer writer;
+    private final char[] digits = new char[NumberFormatter.MAX_LENGTH];
+    private boolean failed = false;
+
+    WriterSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(String text) {
+        if (failed) {
+            return;
+        }
+
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    @Override
+    public void write(double number) {
+        if (failed) {
+            return;
+        }
+
+        try {
+            writer.write(digits, 0, NumberFormatter.format(number, digits));
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    @Override
+    public void newLine() {
+        write(System.lineSeparator());
+    }
+
+    @Override
+    public void flush() {
+        if (failed) {
+            return;
+        }
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+}